@@ -0,0 +1,39 @@
+package com.st.maven.fingerprint;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks with the standard JMH command line. Results are written to
+ * jmh-result.json unless other format or file is given, so they can be
+ * compared between releases
+ */
+public class BenchmarkMain {
+
+	private static final String DEFAULT_RESULT = "jmh-result.json";
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListProfilers() || cmd.shouldListResultFormats() || cmd.shouldListWithParams()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.parent(cmd);
+		if (!cmd.getResultFormat().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON);
+		}
+		if (!cmd.getResult().hasValue()) {
+			builder.result(DEFAULT_RESULT);
+		}
+		Options options = builder.build();
+		new Runner(options).run();
+	}
+
+	private BenchmarkMain() {
+		// do nothing
+	}
+}
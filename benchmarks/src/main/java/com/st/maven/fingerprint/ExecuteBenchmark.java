@@ -0,0 +1,110 @@
+package com.st.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole run of the generate goal on a clean target directory
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecuteBenchmark {
+
+	@Param({ "100", "1000" })
+	private int files;
+
+	@Param({ "10000" })
+	private int fileSize;
+
+	@Param({ "20" })
+	private int linksPerFile;
+
+	@Param({ "0.1" })
+	private double preDensity;
+
+	@Param({ "1", "4" })
+	private int threads;
+
+	private File root;
+	private File source;
+	private File target;
+
+	@Setup(Level.Trial)
+	public void generate() throws IOException {
+		root = Files.createTempDirectory("fingerprint-benchmark").toFile();
+		source = new File(root, "webapp");
+		target = new File(root, "optimized-webapp");
+		new SyntheticWebapp(files, fileSize, linksPerFile, preDensity).write(source);
+	}
+
+	@Setup(Level.Invocation)
+	public void clean() throws IOException {
+		FileUtils.deleteDirectory(target);
+	}
+
+	@TearDown(Level.Trial)
+	public void cleanup() throws IOException {
+		FileUtils.deleteDirectory(root);
+	}
+
+	@Benchmark
+	public void execute() throws Exception {
+		FingerprintMojo mojo = new FingerprintMojo();
+		mojo.setLog(new SystemStreamLog() {
+			@Override
+			public boolean isInfoEnabled() {
+				return false;
+			}
+
+			@Override
+			public void info(CharSequence content) {
+				// too verbose
+			}
+		});
+		set(mojo, "sourceDirectory", source);
+		set(mojo, "targetDirectory", target);
+		set(mojo, "namePattern", "[hash][name].[ext]");
+		set(mojo, "extensionsToFilter", Arrays.asList("html", "css", "js"));
+		set(mojo, "htmlExtensions", new HashSet<>(Arrays.asList("html")));
+		set(mojo, "threads", threads);
+		set(mojo, "buildStateFile", new File(root, "fingerprint-build-state.txt"));
+		mojo.execute();
+	}
+
+	// the same way maven injects configuration
+	private static void set(Object mojo, String name, Object value) throws MojoExecutionException {
+		try {
+			Field field = mojo.getClass().getDeclaredField(name);
+			field.setAccessible(true);
+			field.set(mojo, value);
+		} catch (ReflectiveOperationException e) {
+			throw new MojoExecutionException("unable to set: " + name, e);
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.st.maven.fingerprint;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilenameBenchmark {
+
+	@Param({ "[hash][name].[ext]", "[name].[ext]?v=[hash:8]" })
+	private String namePattern;
+
+	private final String fingerprint = "d41d8cd98f00b204e9800998ecf8427e";
+	private final String link = "/static/css/bootstrap.min.css";
+
+	@Benchmark
+	public String generateTargetResourceFilename() {
+		return Util.generateTargetResourceFilename(fingerprint, link, namePattern);
+	}
+}
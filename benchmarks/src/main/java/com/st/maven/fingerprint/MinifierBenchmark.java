@@ -0,0 +1,60 @@
+package com.st.maven.fingerprint;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MinifierBenchmark {
+
+	@Param({ "10000", "100000" })
+	private int fileSize;
+
+	@Param({ "0.0", "0.3" })
+	private double preDensity;
+
+	private final SystemStreamLog log = new SystemStreamLog();
+	private String html;
+	private String js;
+	private String css;
+
+	@Setup
+	public void setup() {
+		SyntheticWebapp webapp = new SyntheticWebapp(40, fileSize, 10, preDensity);
+		html = webapp.html();
+		js = webapp.js();
+		css = webapp.css();
+	}
+
+	@Benchmark
+	public String minifyHtml() {
+		return HtmlMinifier.minify(html);
+	}
+
+	@Benchmark
+	public String compressJavaScript() {
+		return Compressor.compressJavaScript(new StringReader(js), log);
+	}
+
+	@Benchmark
+	public String compressCss() {
+		return Compressor.compressCSS(new StringReader(css), log);
+	}
+}
@@ -0,0 +1,62 @@
+package com.st.maven.fingerprint;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Link detection and rewriting of a single page. The same pipeline is used
+ * by the mojo for every processed file
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RewriteBenchmark {
+
+	private static final LinkRewriter.LinkHandler HANDLER = (link, pattern) -> "/d41d8cd98f00b204e9800998ecf8427e" + link;
+
+	@Param({ "10000", "100000" })
+	private int fileSize;
+
+	@Param({ "10", "100" })
+	private int linksPerFile;
+
+	private String page;
+
+	@Setup
+	public void setup() {
+		page = new SyntheticWebapp(40, fileSize, linksPerFile, 0.1).html();
+	}
+
+	@Benchmark
+	public String rewrite() throws MojoExecutionException {
+		return LinkRewriter.rewrite(page, HANDLER);
+	}
+
+	// pattern by pattern as before the single pass. Still used if links
+	// overlap
+	@Benchmark
+	public String rewriteSequentially() throws MojoExecutionException {
+		return LinkRewriter.rewriteSequentially(page, HANDLER);
+	}
+
+	@Benchmark
+	public List<String> findLinks() {
+		return LinkRewriter.findLinks(page);
+	}
+}
@@ -0,0 +1,149 @@
+package com.st.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates webapp with html, css, js and images linked to each other.
+ * Output depends only on the parameters, so results of different runs are
+ * comparable.
+ */
+class SyntheticWebapp {
+
+	private static final String WORDS = "lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod tempor incididunt ut labore et dolore magna aliqua";
+
+	private final Random random;
+	private final int fileSize;
+	private final int linksPerFile;
+	private final double preDensity;
+	private final List<String> stylesheets = new ArrayList<>();
+	private final List<String> scripts = new ArrayList<>();
+	private final List<String> images = new ArrayList<>();
+	private final List<String> pages = new ArrayList<>();
+
+	/**
+	 * @param files        total number of files. Split equally between pages,
+	 *                     stylesheets, scripts and images
+	 * @param fileSize     approximate size of each file in bytes
+	 * @param linksPerFile number of links in each page and stylesheet
+	 * @param preDensity   share of the page blocks wrapped into &lt;pre&gt;
+	 */
+	SyntheticWebapp(int files, int fileSize, int linksPerFile, double preDensity) {
+		this.random = new Random(files * 31L + fileSize);
+		this.fileSize = fileSize;
+		this.linksPerFile = linksPerFile;
+		this.preDensity = preDensity;
+		int perKind = Math.max(1, files / 4);
+		for (int i = 0; i < perKind; i++) {
+			stylesheets.add("/css/style" + i + ".css");
+			scripts.add("/js/script" + i + ".js");
+			images.add("/img/image" + i + ".png");
+			pages.add("/page" + i + ".html");
+		}
+	}
+
+	void write(File root) throws IOException {
+		for (String cur : images) {
+			byte[] data = new byte[fileSize];
+			random.nextBytes(data);
+			write(root, cur, data);
+		}
+		for (String cur : stylesheets) {
+			write(root, cur, css().getBytes(StandardCharsets.UTF_8));
+		}
+		for (String cur : scripts) {
+			write(root, cur, js().getBytes(StandardCharsets.UTF_8));
+		}
+		for (String cur : pages) {
+			write(root, cur, html().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	String html() {
+		StringBuilder result = new StringBuilder(fileSize + 256);
+		result.append("<!DOCTYPE html>\n<html>\n<head>\n");
+		int links = linksPerFile;
+		// some of the links in the head, the rest in the body
+		for (int i = 0; i < links / 3; i++) {
+			result.append("\t<link rel=\"stylesheet\" type=\"text/css\" href=\"").append(pick(stylesheets)).append("\">\n");
+		}
+		links -= links / 3;
+		result.append("</head>\n<body>\n");
+		int blocks = Math.max(1, fileSize / 200);
+		for (int i = 0; i < blocks; i++) {
+			if (random.nextDouble() < preDensity) {
+				result.append("\t<pre>\n    ").append(words(8)).append("\n        ").append(words(6)).append("\n\t</pre>\n");
+			} else {
+				result.append("\t<div class=\"row\">\n\t\t<p>").append(words(12)).append("</p>\n");
+				result.append("\t\t<input type=\"text\" name=\"field").append(i).append("\">\n\t</div>\n");
+			}
+			// spread links across the body
+			int linksInBlock = links / (blocks - i);
+			for (int j = 0; j < linksInBlock; j++) {
+				if (random.nextBoolean()) {
+					result.append("\t<img src=\"").append(pick(images)).append("\" alt=\"\">\n");
+				} else {
+					result.append("\t<script src=\"").append(pick(scripts)).append("\"></script>\n");
+				}
+			}
+			links -= linksInBlock;
+		}
+		result.append("</body>\n</html>\n");
+		return result.toString();
+	}
+
+	String css() {
+		StringBuilder result = new StringBuilder(fileSize + 256);
+		int rules = Math.max(1, fileSize / 120);
+		int links = linksPerFile;
+		for (int i = 0; i < rules; i++) {
+			result.append(".class").append(i).append(" {\n\tcolor: #ffffff;\n\tmargin: 0 auto;\n\tpadding: 10px 20px 10px 20px;\n");
+			int linksInRule = links / (rules - i);
+			for (int j = 0; j < linksInRule; j++) {
+				result.append("\tbackground: url(\"").append(pick(images)).append("\");\n");
+			}
+			links -= linksInRule;
+			result.append("}\n\n");
+		}
+		return result.toString();
+	}
+
+	String js() {
+		StringBuilder result = new StringBuilder(fileSize + 256);
+		int functions = Math.max(1, fileSize / 150);
+		for (int i = 0; i < functions; i++) {
+			result.append("// ").append(words(6)).append('\n');
+			result.append("function calculate").append(i).append("(firstArgument, secondArgument) {\n");
+			result.append("\tvar result = firstArgument + secondArgument * ").append(i).append(";\n");
+			result.append("\tif (result > 100) {\n\t\treturn result - 100;\n\t}\n\treturn result;\n}\n\n");
+		}
+		return result.toString();
+	}
+
+	private String words(int count) {
+		String[] words = WORDS.split(" ");
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i != 0) {
+				result.append(' ');
+			}
+			result.append(words[random.nextInt(words.length)]);
+		}
+		return result.toString();
+	}
+
+	private String pick(List<String> links) {
+		return links.get(random.nextInt(links.size()));
+	}
+
+	private static void write(File root, String path, byte[] data) throws IOException {
+		File file = new File(root, path);
+		Files.createDirectories(file.getParentFile().toPath());
+		Files.write(file.toPath(), data);
+	}
+}
@@ -0,0 +1,244 @@
+package com.st.maven.fingerprint;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the optimized webapp into zip archive from a single thread. Entries
+ * are submitted concurrently by the processing threads, but written in the
+ * order of the source files as soon as all preceding files are submitted.
+ * Entries of the same source file are ordered by name. Together with the
+ * fixed timestamp this makes archive reproducible. Already compressed
+ * content is stored instead of deflated.
+ */
+class ArchiveWriter {
+
+	// 1980-02-01T00:00:00Z. The earliest time without zip timezone issues
+	static final long DEFAULT_TIMESTAMP = 315532800000L + 31 * 24 * 3600 * 1000L;
+	private static final Set<String> STORED_EXTENSIONS = new HashSet<>(Arrays.asList("png", "jpg", "jpeg", "gif", "webp", "avif", "woff", "woff2", "gz", "br", "zip", "jar", "mp3", "mp4", "webm", "ogg"));
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File file;
+	private final File tempFile;
+	private final long time;
+	// files of the source directory in the order of the entries
+	private final Map<String, CompletableFuture<List<Entry>>> sources = new LinkedHashMap<>();
+	// entries without source file. Written last
+	private final CompletableFuture<List<Entry>> extra = new CompletableFuture<>();
+	private final Thread thread;
+	private volatile boolean aborted;
+	private volatile IOException failure;
+
+	/**
+	 * @param timestamp time of all entries in milliseconds since epoch
+	 * @param sources   normalized paths of the source files in the order of
+	 *                  the entries
+	 */
+	ArchiveWriter(File file, long timestamp, List<String> sources) {
+		this.file = file;
+		this.tempFile = new File(file.getParentFile(), "." + file.getName() + ".tmp");
+		// zip stores local time. Entries should have the same time in any
+		// timezone
+		this.time = timestamp - TimeZone.getDefault().getOffset(timestamp);
+		for (String cur : sources) {
+			this.sources.put(cur, new CompletableFuture<>());
+		}
+		thread = new Thread(this::run, "fingerprint-archive");
+	}
+
+	void start() throws IOException {
+		File parent = file.getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("unable to create directory: " + parent.getAbsolutePath());
+		}
+		thread.start();
+	}
+
+	/**
+	 * @param source  normalized path of the source file
+	 * @param entries output of the source file. Might be empty
+	 */
+	void submit(String source, List<Entry> entries) {
+		CompletableFuture<List<Entry>> result = sources.get(source);
+		if (result == null) {
+			throw new IllegalArgumentException("unknown source: " + source);
+		}
+		result.complete(entries);
+	}
+
+	/**
+	 * Source files without entries are skipped. Blocks until archive is
+	 * written
+	 *
+	 * @param entries entries without source file
+	 */
+	void finish(List<Entry> entries) throws IOException {
+		for (CompletableFuture<List<Entry>> cur : sources.values()) {
+			cur.complete(Collections.emptyList());
+		}
+		extra.complete(entries);
+		join();
+		if (failure != null) {
+			throw failure;
+		}
+		try {
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Stops the writer and removes partial archive. Does nothing if archive
+	 * was written
+	 */
+	void abort() {
+		if (!thread.isAlive() && !tempFile.exists()) {
+			return;
+		}
+		aborted = true;
+		for (CompletableFuture<List<Entry>> cur : sources.values()) {
+			cur.complete(Collections.emptyList());
+		}
+		extra.complete(Collections.emptyList());
+		join();
+		tempFile.delete();
+	}
+
+	private void join() {
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		Set<String> written = new HashSet<>();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE))) {
+			List<CompletableFuture<List<Entry>>> order = new ArrayList<>(sources.values());
+			order.add(extra);
+			for (CompletableFuture<List<Entry>> cur : order) {
+				List<Entry> entries = new ArrayList<>(cur.get());
+				if (aborted) {
+					return;
+				}
+				entries.sort(Comparator.comparing(o -> o.name));
+				for (Entry curEntry : entries) {
+					// the same output of the deduplicated resources
+					if (written.add(curEntry.name)) {
+						write(zos, curEntry, buffer);
+					}
+				}
+			}
+		} catch (IOException e) {
+			failure = e;
+		} catch (InterruptedException | ExecutionException e) {
+			failure = new IOException("unable to write archive", e);
+		}
+	}
+
+	private void write(ZipOutputStream zos, Entry entry, byte[] buffer) throws IOException {
+		ZipEntry result = new ZipEntry(entry.name);
+		result.setTime(time);
+		if (isStored(entry.name)) {
+			// size and checksum are written before the data
+			CRC32 crc = new CRC32();
+			long size = 0;
+			try (InputStream is = new FileInputStream(entry.file)) {
+				int read;
+				while ((read = is.read(buffer)) != -1) {
+					crc.update(buffer, 0, read);
+					size += read;
+				}
+			}
+			result.setMethod(ZipEntry.STORED);
+			result.setSize(size);
+			result.setCompressedSize(size);
+			result.setCrc(crc.getValue());
+		}
+		zos.putNextEntry(result);
+		try (InputStream is = new FileInputStream(entry.file)) {
+			copy(is, zos, buffer);
+		}
+		zos.closeEntry();
+	}
+
+	private static void copy(InputStream is, OutputStream os, byte[] buffer) throws IOException {
+		int read;
+		while ((read = is.read(buffer)) != -1) {
+			os.write(buffer, 0, read);
+		}
+	}
+
+	static boolean isStored(String name) {
+		String extension = Util.getExtension(name);
+		return extension != null && STORED_EXTENSIONS.contains(extension.toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * @param value seconds since epoch or ISO-8601 date with offset, the same
+	 *              as project.build.outputTimestamp
+	 * @return milliseconds since epoch or {@link #DEFAULT_TIMESTAMP} if not
+	 *         set
+	 */
+	static long parseTimestamp(String value) {
+		// single character disables reproducible timestamp in maven
+		if (value == null || value.trim().length() < 2) {
+			return DEFAULT_TIMESTAMP;
+		}
+		String trimmed = value.trim();
+		if (trimmed.chars().allMatch(Character::isDigit)) {
+			return Long.parseLong(trimmed) * 1000;
+		}
+		try {
+			return OffsetDateTime.parse(trimmed).toInstant().toEpochMilli();
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("invalid timestamp: " + value, e);
+		}
+	}
+
+	static class Entry {
+
+		// path in the archive without leading slash
+		final String name;
+		final File file;
+
+		Entry(String name, File file) {
+			this.name = name;
+			this.file = file;
+		}
+	}
+}
@@ -0,0 +1,390 @@
+package com.st.maven.fingerprint;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Fingerprinted paths and hashes of the resources referenced in the build.
+ * Written by the plugin and consumed by other executions or by the
+ * application at runtime:
+ *
+ * <pre>
+ * AssetManifest manifest = AssetManifest.load(servletContext.getResourceAsStream("/WEB-INF/fingerprint-manifest.json"));
+ * String url = manifest.resolve("/css/custom.css");
+ * </pre>
+ *
+ * Has no dependencies except JDK.
+ */
+public class AssetManifest {
+
+	private static final int VERSION = 1;
+
+	private final String targetDirectory;
+	// algorithm of the source hashes
+	private final String digestAlgorithm;
+	private final Map<String, Asset> assets;
+
+	AssetManifest(String targetDirectory, String digestAlgorithm, Map<String, Asset> assets) {
+		this.targetDirectory = targetDirectory;
+		this.digestAlgorithm = digestAlgorithm;
+		this.assets = assets;
+	}
+
+	public static AssetManifest load(File file) throws IOException {
+		try (Reader r = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			return load(r);
+		}
+	}
+
+	/**
+	 * Doesn't close the stream
+	 */
+	public static AssetManifest load(InputStream is) throws IOException {
+		return load(new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8)));
+	}
+
+	private static AssetManifest load(Reader r) throws IOException {
+		Object parsed = new Parser(r).parse();
+		if (!(parsed instanceof Map)) {
+			throw new IOException("invalid manifest: object expected");
+		}
+		Map<?, ?> root = (Map<?, ?>) parsed;
+		Object version = root.get("version");
+		if (!(version instanceof Long) || ((Long) version).intValue() != VERSION) {
+			throw new IOException("unsupported manifest version: " + version);
+		}
+		Object assetsObject = root.get("assets");
+		if (!(assetsObject instanceof Map)) {
+			throw new IOException("invalid manifest: assets expected");
+		}
+		Map<String, Asset> assets = new LinkedHashMap<>();
+		for (Map.Entry<?, ?> cur : ((Map<?, ?>) assetsObject).entrySet()) {
+			if (!(cur.getValue() instanceof Map)) {
+				throw new IOException("invalid manifest entry: " + cur.getKey());
+			}
+			Map<?, ?> asset = (Map<?, ?>) cur.getValue();
+			Object path = asset.get("path");
+			if (!(path instanceof String)) {
+				throw new IOException("invalid manifest entry: " + cur.getKey());
+			}
+			Object hash = asset.get("hash");
+			Object source = asset.get("source");
+			assets.put((String) cur.getKey(), new Asset((String) path, hash instanceof String ? (String) hash : null, source instanceof String ? (String) source : null));
+		}
+		Object directory = root.get("targetDirectory");
+		Object algorithm = root.get("digestAlgorithm");
+		return new AssetManifest(directory instanceof String ? (String) directory : null, algorithm instanceof String ? (String) algorithm : null, assets);
+	}
+
+	/**
+	 * @param link absolute path of the resource as referenced in the sources.
+	 *             For example: /css/custom.css
+	 * @return fingerprinted path or null if resource is unknown
+	 */
+	public String resolve(String link) {
+		Asset result = assets.get(link);
+		if (result == null) {
+			return null;
+		}
+		return result.path;
+	}
+
+	/**
+	 * @return fingerprint of the resource or null if resource is unknown
+	 */
+	public String getHash(String link) {
+		Asset result = assets.get(link);
+		if (result == null) {
+			return null;
+		}
+		return result.hash;
+	}
+
+	/**
+	 * @return directory with fingerprinted resources when the manifest was
+	 *         written. Might be null
+	 */
+	public String getTargetDirectory() {
+		return targetDirectory;
+	}
+
+	/**
+	 * @return name of {@link DigestAlgorithm} of the source hashes. Might be
+	 *         null
+	 */
+	String getDigestAlgorithm() {
+		return digestAlgorithm;
+	}
+
+	Map<String, Asset> getAssets() {
+		return Collections.unmodifiableMap(assets);
+	}
+
+	void save(File file) throws IOException {
+		File parent = file.getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs()) {
+			throw new IOException("unable to create directory: " + parent.getAbsolutePath());
+		}
+		try (Writer w = new BufferedWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+			w.append("{\n");
+			w.append("  \"version\": ").append(String.valueOf(VERSION)).append(",\n");
+			if (targetDirectory != null) {
+				w.append("  \"targetDirectory\": ").append(quote(targetDirectory)).append(",\n");
+			}
+			if (digestAlgorithm != null) {
+				w.append("  \"digestAlgorithm\": ").append(quote(digestAlgorithm)).append(",\n");
+			}
+			w.append("  \"assets\": {");
+			boolean first = true;
+			for (Map.Entry<String, Asset> cur : new TreeMap<>(assets).entrySet()) {
+				w.append(first ? "\n" : ",\n");
+				first = false;
+				Asset asset = cur.getValue();
+				w.append("    ").append(quote(cur.getKey())).append(": {\"path\": ").append(quote(asset.path));
+				if (asset.hash != null) {
+					w.append(", \"hash\": ").append(quote(asset.hash));
+				}
+				if (asset.source != null) {
+					w.append(", \"source\": ").append(quote(asset.source));
+				}
+				w.append('}');
+			}
+			w.append(first ? "}\n" : "\n  }\n");
+			w.append("}\n");
+		}
+	}
+
+	private static String quote(String value) {
+		StringBuilder result = new StringBuilder(value.length() + 2);
+		result.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				result.append('\\').append(c);
+			} else if (c < ' ') {
+				result.append(String.format("\\u%04x", (int) c));
+			} else {
+				result.append(c);
+			}
+		}
+		result.append('"');
+		return result.toString();
+	}
+
+	static class Asset {
+
+		final String path;
+		final String hash;
+		// hash of the source file or null if unknown
+		final String source;
+
+		Asset(String path, String hash, String source) {
+			this.path = path;
+			this.hash = hash;
+			this.source = source;
+		}
+	}
+
+	// minimal json parser. Numbers are parsed as long
+	private static class Parser {
+
+		private final Reader r;
+		private int current;
+
+		Parser(Reader r) {
+			this.r = r;
+		}
+
+		Object parse() throws IOException {
+			next();
+			Object result = parseValue();
+			skipWhitespaces();
+			if (current != -1) {
+				throw error("end of input expected");
+			}
+			return result;
+		}
+
+		private Object parseValue() throws IOException {
+			skipWhitespaces();
+			switch (current) {
+			case '{':
+				return parseObject();
+			case '[':
+				return parseArray();
+			case '"':
+				return parseString();
+			case 't':
+				expect("true");
+				return Boolean.TRUE;
+			case 'f':
+				expect("false");
+				return Boolean.FALSE;
+			case 'n':
+				expect("null");
+				return null;
+			default:
+				if (current == '-' || (current >= '0' && current <= '9')) {
+					return parseNumber();
+				}
+				throw error("unexpected character");
+			}
+		}
+
+		private Map<String, Object> parseObject() throws IOException {
+			Map<String, Object> result = new LinkedHashMap<>();
+			next();
+			skipWhitespaces();
+			if (current == '}') {
+				next();
+				return result;
+			}
+			while (true) {
+				skipWhitespaces();
+				if (current != '"') {
+					throw error("name expected");
+				}
+				String name = parseString();
+				skipWhitespaces();
+				if (current != ':') {
+					throw error("':' expected");
+				}
+				next();
+				result.put(name, parseValue());
+				skipWhitespaces();
+				if (current == '}') {
+					next();
+					return result;
+				}
+				if (current != ',') {
+					throw error("',' or '}' expected");
+				}
+				next();
+			}
+		}
+
+		private List<Object> parseArray() throws IOException {
+			List<Object> result = new ArrayList<>();
+			next();
+			skipWhitespaces();
+			if (current == ']') {
+				next();
+				return result;
+			}
+			while (true) {
+				result.add(parseValue());
+				skipWhitespaces();
+				if (current == ']') {
+					next();
+					return result;
+				}
+				if (current != ',') {
+					throw error("',' or ']' expected");
+				}
+				next();
+			}
+		}
+
+		private String parseString() throws IOException {
+			StringBuilder result = new StringBuilder();
+			while (true) {
+				next();
+				if (current == -1) {
+					throw error("unterminated string");
+				}
+				if (current == '"') {
+					next();
+					return result.toString();
+				}
+				if (current != '\\') {
+					result.append((char) current);
+					continue;
+				}
+				next();
+				switch (current) {
+				case 'n':
+					result.append('\n');
+					break;
+				case 't':
+					result.append('\t');
+					break;
+				case 'r':
+					result.append('\r');
+					break;
+				case 'b':
+					result.append('\b');
+					break;
+				case 'f':
+					result.append('\f');
+					break;
+				case 'u':
+					char[] hex = new char[4];
+					for (int i = 0; i < hex.length; i++) {
+						next();
+						hex[i] = (char) current;
+					}
+					try {
+						result.append((char) Integer.parseInt(new String(hex), 16));
+					} catch (NumberFormatException e) {
+						throw error("invalid escape");
+					}
+					break;
+				case -1:
+					throw error("unterminated string");
+				default:
+					result.append((char) current);
+				}
+			}
+		}
+
+		private Long parseNumber() throws IOException {
+			StringBuilder result = new StringBuilder();
+			while (current == '-' || (current >= '0' && current <= '9')) {
+				result.append((char) current);
+				next();
+			}
+			try {
+				return Long.valueOf(result.toString());
+			} catch (NumberFormatException e) {
+				throw error("invalid number");
+			}
+		}
+
+		private void expect(String value) throws IOException {
+			for (int i = 0; i < value.length(); i++) {
+				if (current != value.charAt(i)) {
+					throw error(value + " expected");
+				}
+				next();
+			}
+		}
+
+		private void skipWhitespaces() throws IOException {
+			while (current == ' ' || current == '\n' || current == '\r' || current == '\t') {
+				next();
+			}
+		}
+
+		private void next() throws IOException {
+			current = r.read();
+		}
+
+		private IOException error(String message) {
+			return new IOException("invalid manifest: " + message);
+		}
+	}
+}
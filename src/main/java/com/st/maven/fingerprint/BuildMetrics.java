@@ -0,0 +1,236 @@
+package com.st.maven.fingerprint;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.text.StringEscapeUtils;
+
+/**
+ * Time spent in each phase of the build and statistics of every file.
+ * Phases might nest: rewrite includes hashing of the referenced resources.
+ * Time of the phases executed concurrently is summed up. Disabled metrics
+ * record nothing.
+ */
+class BuildMetrics {
+
+	enum Phase {
+		SCAN, GRAPH, HASH, BUNDLE, FLATTEN, REWRITE, MINIFY_HTML, MINIFY_JS, MINIFY_CSS, STREAM, WRITE, PRECOMPRESS, COPY, STATE
+	}
+
+	static final BuildMetrics DISABLED = new BuildMetrics(false);
+
+	private static final Timer NOOP = () -> {
+		// do nothing
+	};
+
+	private final boolean enabled;
+	private final ThreadMXBean threads;
+	private final boolean cpuTimeSupported;
+	private final long start = System.nanoTime();
+	private final LongAdder[] counts = newAdders();
+	private final LongAdder[] wallNanos = newAdders();
+	private final LongAdder[] cpuNanos = newAdders();
+	private final LongAdder linkHits = new LongAdder();
+	private final LongAdder linkMisses = new LongAdder();
+	private final LongAdder linkMissing = new LongAdder();
+	private final ConcurrentLinkedQueue<FileMetrics> files = new ConcurrentLinkedQueue<>();
+
+	BuildMetrics() {
+		this(true);
+	}
+
+	private BuildMetrics(boolean enabled) {
+		this.enabled = enabled;
+		this.threads = enabled ? ManagementFactory.getThreadMXBean() : null;
+		this.cpuTimeSupported = enabled && threads.isCurrentThreadCpuTimeSupported();
+	}
+
+	/**
+	 * Should be closed in the same thread
+	 */
+	Timer start(Phase phase) {
+		if (!enabled) {
+			return NOOP;
+		}
+		long wallStart = System.nanoTime();
+		long cpuStart = cpuTime();
+		return () -> {
+			counts[phase.ordinal()].increment();
+			wallNanos[phase.ordinal()].add(System.nanoTime() - wallStart);
+			if (cpuTimeSupported) {
+				cpuNanos[phase.ordinal()].add(cpuTime() - cpuStart);
+			}
+		};
+	}
+
+	/**
+	 * @param nanos time spent to process or copy the file
+	 */
+	void recordFile(String path, String action, long bytesIn, long bytesOut, long nanos) {
+		if (!enabled) {
+			return;
+		}
+		files.add(new FileMetrics(path, action, bytesIn, bytesOut, nanos));
+	}
+
+	// link resolved previously
+	void linkHit() {
+		if (enabled) {
+			linkHits.increment();
+		}
+	}
+
+	// link resolved for the first time
+	void linkMiss() {
+		if (enabled) {
+			linkMisses.increment();
+		}
+	}
+
+	// link to the resource which doesn't exist
+	void linkMissing() {
+		if (enabled) {
+			linkMissing.increment();
+		}
+	}
+
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return the slowest files first
+	 */
+	List<FileMetrics> getSlowestFiles(int limit) {
+		List<FileMetrics> result = new ArrayList<>(files);
+		result.sort(Comparator.comparingLong((FileMetrics o) -> o.nanos).reversed().thenComparing(o -> o.path));
+		if (result.size() > limit) {
+			return new ArrayList<>(result.subList(0, limit));
+		}
+		return result;
+	}
+
+	/**
+	 * Report format is selected by the extension: csv or json
+	 */
+	void save(File file) throws IOException {
+		File parent = file.getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs()) {
+			throw new IOException("unable to create directory: " + parent.getAbsolutePath());
+		}
+		List<FileMetrics> sorted = new ArrayList<>(files);
+		sorted.sort(Comparator.comparing(o -> o.path));
+		try (Writer w = new BufferedWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+			if (file.getName().endsWith(".csv")) {
+				writeCsv(w, sorted);
+			} else {
+				writeJson(w, sorted);
+			}
+		}
+	}
+
+	private void writeCsv(Writer w, List<FileMetrics> sorted) throws IOException {
+		w.append("type,name,count,wall_ms,cpu_ms,bytes_in,bytes_out\n");
+		w.append("total,execute,1,").append(millis(System.nanoTime() - start)).append(",,,\n");
+		for (Phase cur : Phase.values()) {
+			w.append("phase,").append(name(cur)).append(',').append(String.valueOf(counts[cur.ordinal()].sum())).append(',');
+			w.append(millis(wallNanos[cur.ordinal()].sum())).append(',').append(cpuTimeSupported ? millis(cpuNanos[cur.ordinal()].sum()) : "").append(",,\n");
+		}
+		w.append("links,hit,").append(String.valueOf(linkHits.sum())).append(",,,,\n");
+		w.append("links,miss,").append(String.valueOf(linkMisses.sum())).append(",,,,\n");
+		w.append("links,missing,").append(String.valueOf(linkMissing.sum())).append(",,,,\n");
+		for (FileMetrics cur : sorted) {
+			w.append(cur.action).append(',').append(StringEscapeUtils.escapeCsv(cur.path)).append(",1,").append(millis(cur.nanos)).append(",,");
+			w.append(String.valueOf(cur.bytesIn)).append(',').append(String.valueOf(cur.bytesOut)).append('\n');
+		}
+	}
+
+	private void writeJson(Writer w, List<FileMetrics> sorted) throws IOException {
+		w.append("{\n");
+		w.append("  \"wallMillis\": ").append(millis(System.nanoTime() - start)).append(",\n");
+		w.append("  \"phases\": [\n");
+		Phase[] phases = Phase.values();
+		for (int i = 0; i < phases.length; i++) {
+			Phase cur = phases[i];
+			w.append("    {\"name\": \"").append(name(cur)).append("\", \"count\": ").append(String.valueOf(counts[cur.ordinal()].sum()));
+			w.append(", \"wallMillis\": ").append(millis(wallNanos[cur.ordinal()].sum()));
+			if (cpuTimeSupported) {
+				w.append(", \"cpuMillis\": ").append(millis(cpuNanos[cur.ordinal()].sum()));
+			}
+			w.append('}').append(i == phases.length - 1 ? "\n" : ",\n");
+		}
+		w.append("  ],\n");
+		w.append("  \"links\": {\"hit\": ").append(String.valueOf(linkHits.sum())).append(", \"miss\": ").append(String.valueOf(linkMisses.sum()));
+		w.append(", \"missing\": ").append(String.valueOf(linkMissing.sum())).append("},\n");
+		w.append("  \"files\": [\n");
+		for (int i = 0; i < sorted.size(); i++) {
+			FileMetrics cur = sorted.get(i);
+			// java escaping is valid json and doesn't escape slashes
+			w.append("    {\"path\": \"").append(StringEscapeUtils.escapeJava(cur.path)).append("\", \"action\": \"").append(cur.action);
+			w.append("\", \"wallMillis\": ").append(millis(cur.nanos)).append(", \"bytesIn\": ").append(String.valueOf(cur.bytesIn));
+			w.append(", \"bytesOut\": ").append(String.valueOf(cur.bytesOut)).append('}').append(i == sorted.size() - 1 ? "\n" : ",\n");
+		}
+		w.append("  ]\n");
+		w.append("}\n");
+	}
+
+	private long cpuTime() {
+		if (!cpuTimeSupported) {
+			return 0;
+		}
+		return threads.getCurrentThreadCpuTime();
+	}
+
+	static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+	}
+
+	private static String name(Phase phase) {
+		return phase.name().toLowerCase(Locale.ROOT);
+	}
+
+	private static LongAdder[] newAdders() {
+		LongAdder[] result = new LongAdder[Phase.values().length];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = new LongAdder();
+		}
+		return result;
+	}
+
+	interface Timer extends AutoCloseable {
+
+		@Override
+		void close();
+
+	}
+
+	static class FileMetrics {
+
+		final String path;
+		// process or copy
+		final String action;
+		final long bytesIn;
+		final long bytesOut;
+		final long nanos;
+
+		FileMetrics(String path, String action, long bytesIn, long bytesOut, long nanos) {
+			this.path = path;
+			this.action = action;
+			this.bytesIn = bytesIn;
+			this.bytesOut = bytesOut;
+			this.nanos = nanos;
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package com.st.maven.fingerprint;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.text.StringEscapeUtils;
+
+/**
+ * State of the previous build. Used to skip unchanged files. Paths are
+ * relative to the source directory.
+ */
+class BuildState {
+
+	private static final String HEADER = "#fingerprint-maven-plugin build state v1";
+	private static final String SEPARATOR = "\t";
+
+	private final String configuration;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	BuildState(String configuration) {
+		this.configuration = configuration;
+	}
+
+	String getConfiguration() {
+		return configuration;
+	}
+
+	Entry get(String path) {
+		return entries.get(path);
+	}
+
+	Entry getOrCreate(String path) {
+		return entries.computeIfAbsent(path, Entry::new);
+	}
+
+	void put(Entry entry) {
+		entries.put(entry.path, entry);
+	}
+
+	void remove(String path) {
+		entries.remove(path);
+	}
+
+	Map<String, Entry> getEntries() {
+		return Collections.unmodifiableMap(entries);
+	}
+
+	/**
+	 * @return previous state or empty state if file is missing, corrupted or
+	 *         was created with different configuration
+	 */
+	static BuildState load(File file, String configuration) throws IOException {
+		BuildState result = new BuildState(configuration);
+		if (!file.isFile()) {
+			return result;
+		}
+		try (BufferedReader r = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			if (!HEADER.equals(r.readLine())) {
+				return result;
+			}
+			String[] config = split(r.readLine());
+			if (config.length != 2 || !config[0].equals("config") || !config[1].equals(configuration)) {
+				return result;
+			}
+			Entry current = null;
+			String curLine;
+			while ((curLine = r.readLine()) != null) {
+				String[] parts = split(curLine);
+				if (parts[0].equals("file") && parts.length == 7) {
+					current = new Entry(parts[1]);
+					current.size = Long.parseLong(parts[2]);
+					current.lastModified = Long.parseLong(parts[3]);
+					current.hash = emptyToNull(parts[4]);
+					current.outputHash = emptyToNull(parts[5]);
+					current.target = emptyToNull(parts[6]);
+					result.put(current);
+				} else if (parts[0].equals("bundle") && parts.length == 4) {
+					current = new Entry(parts[1]);
+					current.bundle = true;
+					current.outputHash = emptyToNull(parts[2]);
+					current.target = emptyToNull(parts[3]);
+					result.put(current);
+				} else if (parts[0].equals("link") && parts.length == 3 && current != null) {
+					current.links.put(parts[1], emptyToNull(parts[2]));
+				} else if (parts[0].equals("reference") && parts.length == 2 && current != null) {
+					current.references.add(parts[1]);
+				} else {
+					return new BuildState(configuration);
+				}
+			}
+		} catch (NumberFormatException e) {
+			return new BuildState(configuration);
+		}
+		return result;
+	}
+
+	void save(File file) throws IOException {
+		File parent = file.getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs()) {
+			throw new IOException("unable to create directory: " + parent.getAbsolutePath());
+		}
+		try (Writer w = new BufferedWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+			w.append(HEADER).append('\n');
+			writeLine(w, "config", configuration);
+			for (Entry cur : new TreeMap<>(entries).values()) {
+				if (cur.bundle) {
+					writeLine(w, "bundle", cur.path, cur.outputHash, cur.target);
+				} else {
+					writeLine(w, "file", cur.path, String.valueOf(cur.size), String.valueOf(cur.lastModified), cur.hash, cur.outputHash, cur.target);
+				}
+				for (Map.Entry<String, String> curLink : cur.links.entrySet()) {
+					writeLine(w, "link", curLink.getKey(), curLink.getValue());
+				}
+				for (String curReference : cur.references) {
+					writeLine(w, "reference", curReference);
+				}
+			}
+		}
+	}
+
+	private static void writeLine(Writer w, String... parts) throws IOException {
+		for (int i = 0; i < parts.length; i++) {
+			if (i != 0) {
+				w.append(SEPARATOR);
+			}
+			if (parts[i] != null) {
+				w.append(escape(parts[i]));
+			}
+		}
+		w.append('\n');
+	}
+
+	// paths and hashes rarely need escaping, which is slow
+	private static String escape(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x20 || c > 0x7e || c == '\\' || c == '"' || c == '\'') {
+				return StringEscapeUtils.escapeJava(value);
+			}
+		}
+		return value;
+	}
+
+	private static String[] split(String line) {
+		if (line == null) {
+			return new String[0];
+		}
+		String[] result = line.split(SEPARATOR, -1);
+		for (int i = 0; i < result.length; i++) {
+			result[i] = StringEscapeUtils.unescapeJava(result[i]);
+		}
+		return result;
+	}
+
+	private static String emptyToNull(String value) {
+		if (value.isEmpty()) {
+			return null;
+		}
+		return value;
+	}
+
+	static class Entry {
+
+		// source file or link of the bundle
+		final String path;
+		// bundle has no source. Its links are the bundled resources
+		boolean bundle;
+		long size;
+		long lastModified;
+		// source file hash
+		String hash;
+		// hash of processed output. null for files copied as is
+		String outputHash;
+		// location of the output relative to the target directory
+		String target;
+		// link -> fingerprinted link. null for missing resources
+		final Map<String, String> links = new LinkedHashMap<>();
+		// referenced files
+		final List<String> references = new ArrayList<>();
+
+		Entry(String path) {
+			this.path = path;
+		}
+
+		synchronized boolean isSameFile(FileIndex.Entry file) {
+			return size == file.size && lastModified == file.lastModified;
+		}
+
+		synchronized void setSource(FileIndex.Entry file, String hash) {
+			this.size = file.size;
+			this.lastModified = file.lastModified;
+			this.hash = hash;
+		}
+
+		synchronized String getHash() {
+			return hash;
+		}
+
+		Entry copy() {
+			Entry result = new Entry(path);
+			synchronized (this) {
+				result.bundle = bundle;
+				result.size = size;
+				result.lastModified = lastModified;
+				result.hash = hash;
+				result.outputHash = outputHash;
+				result.target = target;
+				result.links.putAll(links);
+				result.references.addAll(references);
+			}
+			return result;
+		}
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.st.maven.fingerprint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scripts or stylesheets served as a single file
+ */
+public class Bundle {
+
+	/**
+	 * Path of the bundle. For example: /js/app.js. Extension defines the type
+	 * of the bundle: js or css
+	 */
+	private String name;
+
+	/**
+	 * Paths of the bundled resources in the order of the tags
+	 */
+	private List<String> resources = new ArrayList<>();
+
+	public Bundle() {
+		// used by maven
+	}
+
+	Bundle(String name, List<String> resources) {
+		this.name = name;
+		this.resources = resources;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	List<String> getResources() {
+		return resources;
+	}
+
+	@Override
+	public String toString() {
+		return name + "=" + resources;
+	}
+}
@@ -0,0 +1,273 @@
+package com.st.maven.fingerprint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Replaces runs of adjacent script or stylesheet tags with a single tag. Tags
+ * are adjacent if only whitespaces are between them. Tags with attributes
+ * which might change the behaviour (async, defer, media and so on) are never
+ * bundled.
+ */
+class Bundler {
+
+	private static final Pattern TAG_PATTERN = Pattern.compile("<script\\b[^>]*>\\s*</script\\s*>|<link\\b[^>]*>", Pattern.CASE_INSENSITIVE);
+	private static final Pattern ATTRIBUTE_PATTERN = Pattern.compile("([a-zA-Z-]+)(?:\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'))?");
+
+	enum Type {
+		SCRIPT(".js", ";\n"), STYLESHEET(".css", "\n");
+
+		private final String extension;
+		private final String separator;
+
+		Type(String extension, String separator) {
+			this.extension = extension;
+			this.separator = separator;
+		}
+
+		String getExtension() {
+			return extension;
+		}
+
+		// between the bundled resources
+		String getSeparator() {
+			return separator;
+		}
+	}
+
+	interface BundleHandler {
+
+		/**
+		 * @param name  name of the declared bundle or null if bundle is
+		 *              created for adjacent tags
+		 * @param links links of the bundled resources as found in the tags
+		 * @return link to the bundle or null if resources should not be
+		 *         bundled
+		 */
+		String bundle(Type type, String name, List<String> links) throws MojoExecutionException;
+
+		/**
+		 * @return true if link points to the local resource which could be
+		 *         bundled
+		 */
+		boolean isLocal(String link);
+
+		/**
+		 * @return link without query and prefix to compare with the declared
+		 *         bundles
+		 */
+		String getPath(String link);
+
+	}
+
+	private final boolean adjacent;
+	private final List<Bundle> declared;
+	private final BundleHandler handler;
+
+	/**
+	 * @param adjacent bundle all runs of adjacent tags
+	 * @param declared bundles from the configuration
+	 */
+	Bundler(boolean adjacent, List<Bundle> declared, BundleHandler handler) {
+		this.adjacent = adjacent;
+		this.declared = declared;
+		this.handler = handler;
+	}
+
+	String apply(String data) throws MojoExecutionException {
+		StringBuilder result = null;
+		int written = 0;
+		for (List<Tag> run : findRuns(data)) {
+			for (Segment segment : split(run)) {
+				List<String> links = new ArrayList<>(segment.tags.size());
+				for (Tag cur : segment.tags) {
+					links.add(cur.link);
+				}
+				Tag first = segment.tags.get(0);
+				Tag last = segment.tags.get(segment.tags.size() - 1);
+				String link = handler.bundle(first.type, segment.name, links);
+				if (link == null) {
+					continue;
+				}
+				if (result == null) {
+					result = new StringBuilder(data.length());
+				}
+				result.append(data, written, first.start);
+				// the first tag keeps its attributes
+				result.append(data, first.start, first.linkStart).append(link).append(data, first.linkEnd, first.end);
+				written = last.end;
+			}
+		}
+		if (result == null) {
+			return data;
+		}
+		result.append(data, written, data.length());
+		return result.toString();
+	}
+
+	private List<List<Tag>> findRuns(String data) {
+		List<List<Tag>> result = new ArrayList<>();
+		List<Tag> current = new ArrayList<>();
+		Matcher m = TAG_PATTERN.matcher(data);
+		while (m.find()) {
+			Tag tag = parse(m);
+			Tag previous = current.isEmpty() ? null : current.get(current.size() - 1);
+			if (tag == null || previous == null || previous.type != tag.type || !isWhitespace(data, previous.end, tag.start)) {
+				addRun(result, current);
+				current = new ArrayList<>();
+			}
+			if (tag != null) {
+				current.add(tag);
+			}
+		}
+		addRun(result, current);
+		return result;
+	}
+
+	private static void addRun(List<List<Tag>> runs, List<Tag> run) {
+		if (!run.isEmpty()) {
+			runs.add(run);
+		}
+	}
+
+	// splits run into the declared bundles and runs of the remaining tags
+	private List<Segment> split(List<Tag> run) {
+		List<Segment> result = new ArrayList<>();
+		Segment remaining = new Segment(null);
+		int i = 0;
+		while (i < run.size()) {
+			Bundle bundle = findDeclared(run, i);
+			if (bundle == null) {
+				remaining.tags.add(run.get(i));
+				i++;
+				continue;
+			}
+			addAdjacent(result, remaining);
+			remaining = new Segment(null);
+			Segment segment = new Segment(bundle.getName());
+			for (int j = 0; j < bundle.getResources().size(); j++) {
+				segment.tags.add(run.get(i + j));
+			}
+			result.add(segment);
+			i += bundle.getResources().size();
+		}
+		addAdjacent(result, remaining);
+		return result;
+	}
+
+	private void addAdjacent(List<Segment> segments, Segment segment) {
+		// nothing to gain from the single tag
+		if (adjacent && segment.tags.size() > 1) {
+			segments.add(segment);
+		}
+	}
+
+	private Bundle findDeclared(List<Tag> run, int index) {
+		if (declared == null) {
+			return null;
+		}
+		for (Bundle cur : declared) {
+			List<String> resources = cur.getResources();
+			if (resources.isEmpty() || index + resources.size() > run.size() || !cur.getName().endsWith(run.get(index).type.getExtension())) {
+				continue;
+			}
+			boolean matches = true;
+			for (int i = 0; i < resources.size(); i++) {
+				if (!resources.get(i).equals(handler.getPath(run.get(index + i).link))) {
+					matches = false;
+					break;
+				}
+			}
+			if (matches) {
+				return cur;
+			}
+		}
+		return null;
+	}
+
+	// null if tag can't be bundled
+	private Tag parse(Matcher m) {
+		String tag = m.group();
+		boolean script = tag.regionMatches(true, 0, "<script", 0, "<script".length());
+		int attributesStart = script ? "<script".length() : "<link".length();
+		int attributesEnd = tag.indexOf('>');
+		if (attributesEnd > 0 && tag.charAt(attributesEnd - 1) == '/') {
+			attributesEnd--;
+		}
+		Matcher attributes = ATTRIBUTE_PATTERN.matcher(tag);
+		attributes.region(attributesStart, attributesEnd);
+		String link = null;
+		int linkStart = -1;
+		int linkEnd = -1;
+		boolean stylesheet = false;
+		while (attributes.find()) {
+			String name = attributes.group(1).toLowerCase(Locale.ROOT);
+			int valueGroup = attributes.group(2) != null ? 2 : 3;
+			String value = attributes.group(valueGroup);
+			if (script ? name.equals("src") : name.equals("href")) {
+				if (value == null) {
+					return null;
+				}
+				link = value;
+				linkStart = m.start() + attributes.start(valueGroup);
+				linkEnd = m.start() + attributes.end(valueGroup);
+			} else if (name.equals("type")) {
+				if (value == null || !value.equalsIgnoreCase(script ? "text/javascript" : "text/css")) {
+					return null;
+				}
+			} else if (!script && name.equals("rel")) {
+				stylesheet = value != null && value.equalsIgnoreCase("stylesheet");
+			} else {
+				return null;
+			}
+		}
+		if (link == null || (!script && !stylesheet) || !handler.isLocal(link)) {
+			return null;
+		}
+		return new Tag(script ? Type.SCRIPT : Type.STYLESHEET, m.start(), m.end(), link, linkStart, linkEnd);
+	}
+
+	private static boolean isWhitespace(String data, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (!Character.isWhitespace(data.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static class Segment {
+
+		// name of the declared bundle
+		private final String name;
+		private final List<Tag> tags = new ArrayList<>();
+
+		Segment(String name) {
+			this.name = name;
+		}
+	}
+
+	private static class Tag {
+
+		private final Type type;
+		private final int start;
+		private final int end;
+		private final String link;
+		private final int linkStart;
+		private final int linkEnd;
+
+		Tag(Type type, int start, int end, String link, int linkStart, int linkEnd) {
+			this.type = type;
+			this.start = start;
+			this.end = end;
+			this.link = link;
+			this.linkStart = linkStart;
+			this.linkEnd = linkEnd;
+		}
+	}
+}
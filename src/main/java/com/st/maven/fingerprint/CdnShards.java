@@ -0,0 +1,74 @@
+package com.st.maven.fingerprint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns every resource to one of the cdn hosts by its fingerprint. The
+ * same resource gets the same host on every page and in every build, so
+ * caches stay warm.
+ */
+class CdnShards {
+
+	private final List<String> hosts;
+	// link to the host
+	private final ConcurrentMap<String, String> assigned = new ConcurrentHashMap<>();
+
+	/**
+	 * @param cdn comma separated hosts
+	 */
+	CdnShards(String cdn) {
+		List<String> result = new ArrayList<>();
+		for (String cur : cdn.split(",")) {
+			String host = cur.trim();
+			if (!host.isEmpty() && !result.contains(host)) {
+				result.add(host);
+			}
+		}
+		if (result.isEmpty()) {
+			throw new IllegalArgumentException("no cdn hosts: " + cdn);
+		}
+		this.hosts = Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * @param fingerprint fingerprint of the resource or the fingerprinted path
+	 *                    if it is unknown
+	 */
+	String getHost(String link, String fingerprint) {
+		if (hosts.size() == 1) {
+			assigned.putIfAbsent(link, hosts.get(0));
+			return hosts.get(0);
+		}
+		return assigned.computeIfAbsent(link, k -> hosts.get(getShard(fingerprint, hosts.size())));
+	}
+
+	// String.hashCode is the same in every jvm
+	static int getShard(String fingerprint, int shards) {
+		return Math.floorMod(fingerprint.hashCode(), shards);
+	}
+
+	/**
+	 * @return host to the number of resources assigned to it in the order of
+	 *         configuration
+	 */
+	Map<String, Integer> getDistribution() {
+		Map<String, Integer> result = new LinkedHashMap<>();
+		for (String cur : hosts) {
+			result.put(cur, 0);
+		}
+		for (String cur : assigned.values()) {
+			result.merge(cur, 1, Integer::sum);
+		}
+		return result;
+	}
+
+	int size() {
+		return hosts.size();
+	}
+}
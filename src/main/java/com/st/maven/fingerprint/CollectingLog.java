@@ -0,0 +1,81 @@
+package com.st.maven.fingerprint;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Collects warnings and errors of the minifier, so they could be logged by
+ * another process or on the cache hit. Other levels are written to the
+ * standard streams.
+ */
+class CollectingLog extends SystemStreamLog {
+
+	static final byte LEVEL_WARN = 0;
+	static final byte LEVEL_ERROR = 1;
+	private static final int MAX_MESSAGE_LENGTH = 8192;
+
+	private final List<Byte> levels = new ArrayList<>();
+	private final List<String> messages = new ArrayList<>();
+
+	@Override
+	public void warn(CharSequence content) {
+		add(LEVEL_WARN, String.valueOf(content));
+	}
+
+	@Override
+	public void error(CharSequence content) {
+		add(LEVEL_ERROR, String.valueOf(content));
+	}
+
+	@Override
+	public void error(CharSequence content, Throwable error) {
+		error(content + ": " + error.getMessage());
+	}
+
+	private synchronized void add(byte level, String message) {
+		levels.add(level);
+		messages.add(message);
+	}
+
+	synchronized void replay(Log log) {
+		for (int i = 0; i < messages.size(); i++) {
+			if (levels.get(i) == LEVEL_ERROR) {
+				log.error(messages.get(i));
+			} else {
+				log.warn(messages.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Number of messages (int), each message as level (byte) and text (UTF)
+	 */
+	synchronized void write(DataOutputStream out) throws IOException {
+		out.writeInt(messages.size());
+		for (int i = 0; i < messages.size(); i++) {
+			out.writeByte(levels.get(i));
+			String message = messages.get(i);
+			// writeUTF is limited to 64K bytes
+			if (message.length() > MAX_MESSAGE_LENGTH) {
+				message = message.substring(0, MAX_MESSAGE_LENGTH);
+			}
+			out.writeUTF(message);
+		}
+	}
+
+	static CollectingLog read(DataInputStream in) throws IOException {
+		CollectingLog result = new CollectingLog();
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			byte level = in.readByte();
+			result.add(level, in.readUTF());
+		}
+		return result;
+	}
+}
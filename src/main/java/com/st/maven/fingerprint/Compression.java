@@ -0,0 +1,85 @@
+package com.st.maven.fingerprint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Formats of pre-compressed siblings. Maximum compression level is used,
+ * since siblings are created once and served many times.
+ */
+public enum Compression {
+
+	/**
+	 * Served by nginx gzip_static
+	 */
+	GZIP(".gz") {
+		@Override
+		OutputStream newOutputStream(OutputStream out) throws IOException {
+			return new GZIPOutputStream(out) {
+				{
+					def.setLevel(Deflater.BEST_COMPRESSION);
+				}
+			};
+		}
+	},
+	/**
+	 * Raw deflate stream without zlib header
+	 */
+	DEFLATE(".deflate") {
+		@Override
+		OutputStream newOutputStream(OutputStream out) {
+			Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+			return new DeflaterOutputStream(out, deflater) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						deflater.end();
+					}
+				}
+			};
+		}
+	};
+
+	private final String extension;
+
+	Compression(String extension) {
+		this.extension = extension;
+	}
+
+	/**
+	 * @return stream which compresses data into out. Closes out
+	 */
+	abstract OutputStream newOutputStream(OutputStream out) throws IOException;
+
+	byte[] compress(byte[] data) {
+		ByteArrayOutputStream result = new ByteArrayOutputStream(data.length / 2);
+		try (OutputStream os = newOutputStream(result)) {
+			os.write(data);
+		} catch (IOException e) {
+			// in-memory streams don't throw
+			throw new IllegalStateException(e);
+		}
+		return result.toByteArray();
+	}
+
+	/**
+	 * @return compressed sibling of the file
+	 */
+	File getSibling(File file) {
+		return new File(file.getPath() + extension);
+	}
+
+	/**
+	 * @return path of the compressed sibling
+	 */
+	String getSibling(String path) {
+		return path + extension;
+	}
+}
@@ -3,6 +3,7 @@ package com.st.maven.fingerprint;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringWriter;
+import java.security.CodeSource;
 
 import org.apache.maven.plugin.logging.Log;
 import org.mozilla.javascript.ErrorReporter;
@@ -13,6 +14,13 @@ import com.yahoo.platform.yui.compressor.JavaScriptCompressor;
 
 class Compressor {
 
+	// version of the minifier jar, so the shared cache doesn't return
+	// outputs of the other versions
+	static final String VERSION = getVersion(JavaScriptCompressor.class);
+	// minifier and its options. Used as a part of the minification cache key
+	static final String JAVASCRIPT_OPTIONS = VERSION + " js linebreak=-1 munge=true verbose=true preserveAllSemiColons=false disableOptimizations=false";
+	static final String CSS_OPTIONS = VERSION + " css linebreak=-1";
+
 	static String compressJavaScript(Reader in, final Log log) {
 		JavaScriptCompressor compressor;
 		try {
@@ -86,6 +94,30 @@ class Compressor {
 		}
 	}
 
+	/**
+	 * @return implementation version from the manifest or name of the jar.
+	 *         yuicompressor doesn't set the version in its manifest
+	 */
+	static String getVersion(Class<?> clazz) {
+		Package classPackage = clazz.getPackage();
+		if (classPackage != null && classPackage.getImplementationVersion() != null) {
+			return classPackage.getName() + "-" + classPackage.getImplementationVersion();
+		}
+		CodeSource source = clazz.getProtectionDomain().getCodeSource();
+		if (source == null || source.getLocation() == null) {
+			return clazz.getName();
+		}
+		String path = source.getLocation().getPath();
+		if (path.endsWith("/")) {
+			path = path.substring(0, path.length() - 1);
+		}
+		String result = path.substring(path.lastIndexOf('/') + 1);
+		if (result.endsWith(".jar")) {
+			return result.substring(0, result.length() - ".jar".length());
+		}
+		return result;
+	}
+
 	private Compressor() {
 		//do nothing
 	}
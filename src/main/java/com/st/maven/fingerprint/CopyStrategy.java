@@ -0,0 +1,82 @@
+package com.st.maven.fingerprint;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Ways to copy resources which are not processed. Target is expected to be
+ * missing. Target gets the last modified time of the source, so that
+ * unchanged files are not copied again.
+ */
+public enum CopyStrategy {
+
+	/**
+	 * Copy through the java heap
+	 */
+	STREAM {
+		@Override
+		void copy(File source, File target, long lastModified) throws IOException {
+			try (FileInputStream fis = new FileInputStream(source); FileOutputStream fos = new FileOutputStream(target)) {
+				IOUtils.copy(fis, fos);
+			}
+			Files.setLastModifiedTime(target.toPath(), FileTime.fromMillis(lastModified));
+		}
+	},
+	/**
+	 * Default. Zero-copy transfer between file channels
+	 */
+	TRANSFER {
+		@Override
+		void copy(File source, File target, long lastModified) throws IOException {
+			try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ); FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+				long size = in.size();
+				long position = 0;
+				while (position < size) {
+					long transferred = in.transferTo(position, size - position, out);
+					// file was truncated concurrently
+					if (transferred <= 0) {
+						break;
+					}
+					position += transferred;
+				}
+			}
+			Files.setLastModifiedTime(target.toPath(), FileTime.fromMillis(lastModified));
+		}
+	},
+	/**
+	 * Copy-on-write clone where the file system and the JVM support it.
+	 * Regular copy otherwise
+	 */
+	REFLINK {
+		@Override
+		void copy(File source, File target, long lastModified) throws IOException {
+			Files.copy(source.toPath(), target.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+		}
+	},
+	/**
+	 * Hard link to the source. Falls back to TRANSFER if source and target
+	 * are on different file systems. Target shares content with the source,
+	 * so it must not be modified in place
+	 */
+	LINK {
+		@Override
+		void copy(File source, File target, long lastModified) throws IOException {
+			try {
+				Files.createLink(target.toPath(), source.toPath());
+			} catch (IOException | UnsupportedOperationException e) {
+				TRANSFER.copy(source, target, lastModified);
+			}
+		}
+	};
+
+	abstract void copy(File source, File target, long lastModified) throws IOException;
+}
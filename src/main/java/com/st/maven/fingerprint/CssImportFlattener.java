@@ -0,0 +1,258 @@
+package com.st.maven.fingerprint;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Replaces @import of local stylesheets with their contents recursively.
+ * Relative urls of the imported stylesheets are rebased to absolute paths.
+ * Imports which can't be flattened (remote, with media queries and so on)
+ * are kept only if they precede all flattened imports. Otherwise they would
+ * follow the inlined rules and browsers would ignore them, so stylesheet is
+ * left as is. Every imported stylesheet is parsed once.
+ */
+class CssImportFlattener {
+
+	// comments are matched to skip imports inside them
+	private static final Pattern IMPORT_PATTERN = Pattern.compile("/\\*.*?\\*/|@import\\s+(?:url\\(\\s*([\"']?)([^\"')]+?)\\1\\s*\\)|([\"'])([^\"']+)\\3)([^;]*);", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern CHARSET_PATTERN = Pattern.compile("^\\s*@charset\\s+[\"'][^\"']*[\"']\\s*;", Pattern.CASE_INSENSITIVE);
+
+	interface ImportHandler {
+
+		/**
+		 * @param path absolute path of the stylesheet without query
+		 * @return contents of the stylesheet or null if it doesn't exist
+		 */
+		String read(String path) throws MojoExecutionException;
+
+		/**
+		 * @return true if link might point to the local stylesheet
+		 */
+		boolean isLocal(String link);
+
+	}
+
+	private final ImportHandler handler;
+	// flattened imported stylesheets
+	private final ConcurrentMap<String, Flattened> imported = new ConcurrentHashMap<>();
+
+	CssImportFlattener(ImportHandler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * @param path absolute path of the stylesheet. For example: /css/a.css
+	 * @return flattened stylesheet. Its relative urls are not changed
+	 */
+	Flattened flatten(String path, String data) throws MojoExecutionException {
+		return flatten(path, data, new ArrayDeque<>());
+	}
+
+	/**
+	 * @return absolute paths of the local stylesheets imported directly
+	 */
+	List<String> findImports(String path, CharSequence data) {
+		List<String> result = new ArrayList<>();
+		Matcher m = IMPORT_PATTERN.matcher(data);
+		while (m.find()) {
+			String link = getLink(m);
+			if (link == null || !handler.isLocal(link)) {
+				continue;
+			}
+			String importPath = resolve(path, stripQuery(link));
+			if (importPath != null) {
+				result.add(importPath);
+			}
+		}
+		return result;
+	}
+
+	private Flattened flatten(String path, String data, Deque<String> stack) throws MojoExecutionException {
+		if (stack.contains(path)) {
+			StringBuilder chain = new StringBuilder();
+			for (String cur : stack) {
+				chain.append(cur).append(" -> ");
+			}
+			throw new MojoExecutionException("circular @import: " + chain + path);
+		}
+		stack.addLast(path);
+		try {
+			StringBuilder result = new StringBuilder(data.length());
+			Set<String> imports = new LinkedHashSet<>();
+			boolean complete = true;
+			int written = 0;
+			Matcher m = IMPORT_PATTERN.matcher(data);
+			while (m.find()) {
+				String link = getLink(m);
+				if (link == null) {
+					continue;
+				}
+				Flattened cur = null;
+				String importPath = null;
+				if (m.group(5).trim().isEmpty() && handler.isLocal(link)) {
+					importPath = resolve(path, stripQuery(link));
+					if (importPath != null) {
+						cur = load(importPath, stack);
+					}
+				}
+				if (cur == null || !cur.complete) {
+					if (!imports.isEmpty()) {
+						return new Flattened(data, Collections.emptySet(), false);
+					}
+					complete = false;
+					continue;
+				}
+				result.append(data, written, m.start()).append(cur.data);
+				written = m.end();
+				imports.add(importPath);
+				imports.addAll(cur.imports);
+			}
+			result.append(data, written, data.length());
+			return new Flattened(result.toString(), imports, complete);
+		} finally {
+			stack.removeLast();
+		}
+	}
+
+	private Flattened load(String path, Deque<String> stack) throws MojoExecutionException {
+		Flattened result = imported.get(path);
+		if (result != null) {
+			return result;
+		}
+		String data = handler.read(path);
+		if (data == null) {
+			return null;
+		}
+		// @charset is allowed only at the beginning of the importing stylesheet
+		data = rebase(path, removeCharset(data));
+		result = flatten(path, data, stack);
+		Flattened existing = imported.putIfAbsent(path, result);
+		if (existing != null) {
+			return existing;
+		}
+		return result;
+	}
+
+	/**
+	 * @param path absolute path of the stylesheet
+	 * @return stylesheet with relative urls replaced by absolute paths
+	 */
+	static String rebase(String path, String data) {
+		Matcher m = LinkRewriter.CSS_URL_PATTERN.matcher(data);
+		StringBuffer result = new StringBuffer(data.length());
+		while (m.find()) {
+			String link = m.group(2);
+			String rebased = null;
+			if (isRelative(link)) {
+				rebased = resolve(path, link);
+			}
+			if (rebased == null) {
+				rebased = link;
+			}
+			m.appendReplacement(result, Matcher.quoteReplacement(m.group(1) + rebased + m.group(3)));
+		}
+		m.appendTail(result);
+		return result.toString();
+	}
+
+	static String removeCharset(String data) {
+		return CHARSET_PATTERN.matcher(data).replaceFirst("");
+	}
+
+	/**
+	 * @return true if stylesheet has @import outside of comments
+	 */
+	static boolean hasImports(CharSequence data) {
+		Matcher m = IMPORT_PATTERN.matcher(data);
+		while (m.find()) {
+			if (getLink(m) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isRelative(String link) {
+		return !link.isEmpty() && link.charAt(0) != '/' && link.charAt(0) != '#' && link.indexOf(':') == -1;
+	}
+
+	private static String getLink(Matcher m) {
+		if (m.group(2) != null) {
+			return m.group(2).trim();
+		}
+		// comment
+		return m.group(4);
+	}
+
+	/**
+	 * @return absolute path or null if link points outside of the root
+	 */
+	static String resolve(String base, String link) {
+		String path;
+		if (link.startsWith("/")) {
+			path = link;
+		} else {
+			path = base.substring(0, base.lastIndexOf('/') + 1) + link;
+		}
+		Deque<String> parts = new ArrayDeque<>();
+		for (String cur : path.split("/", -1)) {
+			if (cur.isEmpty() || cur.equals(".")) {
+				continue;
+			}
+			if (cur.equals("..")) {
+				if (parts.isEmpty()) {
+					return null;
+				}
+				parts.removeLast();
+				continue;
+			}
+			parts.addLast(cur);
+		}
+		StringBuilder result = new StringBuilder(path.length());
+		for (String cur : parts) {
+			result.append('/').append(cur);
+		}
+		if (path.endsWith("/")) {
+			result.append('/');
+		}
+		return result.toString();
+	}
+
+	private static String stripQuery(String link) {
+		int index = link.indexOf('?');
+		if (index == -1) {
+			index = link.indexOf('#');
+		}
+		if (index == -1) {
+			return link;
+		}
+		return link.substring(0, index);
+	}
+
+	static class Flattened {
+
+		final String data;
+		// absolute paths of all imported stylesheets including nested imports
+		final Set<String> imports;
+		// false if some of the imports were kept. Such stylesheet can't be
+		// inlined into another one
+		final boolean complete;
+
+		Flattened(String data, Set<String> imports, boolean complete) {
+			this.data = data;
+			this.imports = imports;
+			this.complete = complete;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package com.st.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Encodes small resources as base64 data uris. Every resource is encoded once
+ * and then reused by all stylesheets.
+ */
+class DataUriInliner {
+
+	static final Set<String> DEFAULT_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("image/png", "image/gif", "image/jpeg", "image/svg+xml", "image/webp")));
+
+	private static final Map<String, String> MIME_TYPES = new HashMap<>();
+
+	static {
+		MIME_TYPES.put("png", "image/png");
+		MIME_TYPES.put("gif", "image/gif");
+		MIME_TYPES.put("jpg", "image/jpeg");
+		MIME_TYPES.put("jpeg", "image/jpeg");
+		MIME_TYPES.put("svg", "image/svg+xml");
+		MIME_TYPES.put("webp", "image/webp");
+		MIME_TYPES.put("ico", "image/x-icon");
+		MIME_TYPES.put("woff", "font/woff");
+		MIME_TYPES.put("woff2", "font/woff2");
+		MIME_TYPES.put("ttf", "font/ttf");
+		MIME_TYPES.put("otf", "font/otf");
+		MIME_TYPES.put("eot", "application/vnd.ms-fontobject");
+	}
+
+	private final long maxSize;
+	private final long budget;
+	private final Set<String> types;
+	private final ConcurrentMap<String, String> dataUris = new ConcurrentHashMap<>();
+
+	/**
+	 * @param maxSize maximum size of the resource in bytes
+	 * @param budget  maximum length of data uris in a single stylesheet
+	 * @param types   mime types to inline
+	 */
+	DataUriInliner(long maxSize, long budget, Set<String> types) {
+		this.maxSize = maxSize;
+		this.budget = budget;
+		this.types = types;
+	}
+
+	/**
+	 * @return mime type or null if resources of this type are not inlined
+	 */
+	String getMimeType(String path) {
+		String extension = Util.getExtension(path);
+		if (extension == null) {
+			return null;
+		}
+		String result = MIME_TYPES.get(extension.toLowerCase(Locale.ROOT));
+		if (result == null || !types.contains(result)) {
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * @return data uri or null if file is too big
+	 */
+	String getDataUri(File file, String mimeType) throws IOException {
+		if (file.length() > maxSize) {
+			return null;
+		}
+		try {
+			return dataUris.computeIfAbsent(Util.normalize(file) + '\n' + mimeType, key -> {
+				try {
+					return "data:" + mimeType + ";base64," + Base64.getEncoder().encodeToString(Files.readAllBytes(file.toPath()));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * @return budget of a single stylesheet
+	 */
+	Budget newBudget() {
+		return new Budget(budget);
+	}
+
+	static class Budget {
+
+		private long remaining;
+
+		Budget(long remaining) {
+			this.remaining = remaining;
+		}
+
+		/**
+		 * @return true if data uri fits into the budget
+		 */
+		boolean take(String dataUri) {
+			if (dataUri.length() > remaining) {
+				return false;
+			}
+			remaining -= dataUri.length();
+			return true;
+		}
+	}
+}
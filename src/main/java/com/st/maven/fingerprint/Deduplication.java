@@ -0,0 +1,20 @@
+package com.st.maven.fingerprint;
+
+/**
+ * What to do with the resources which have the same content as another
+ * resource. References to the duplicates are rewritten to the canonical
+ * resource: the one with the smallest path.
+ */
+public enum Deduplication {
+
+	/**
+	 * Duplicates are hard links to the output of the canonical resource at
+	 * their original paths
+	 */
+	LINK,
+	/**
+	 * Duplicates are not written
+	 */
+	OMIT
+
+}
@@ -0,0 +1,81 @@
+package com.st.maven.fingerprint;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Algorithms to calculate fingerprint of resources
+ */
+public enum DigestAlgorithm {
+
+	/**
+	 * Default. Compatible with the previous versions
+	 */
+	MD5 {
+		@Override
+		Hasher newHasher() {
+			return new MessageDigestHasher("MD5");
+		}
+	},
+	SHA256 {
+		@Override
+		Hasher newHasher() {
+			return new MessageDigestHasher("SHA-256");
+		}
+	},
+	/**
+	 * Fast non-cryptographic hash
+	 */
+	XXHASH64 {
+		@Override
+		Hasher newHasher() {
+			return new XxHash64();
+		}
+	};
+
+	abstract Hasher newHasher();
+
+	interface Hasher {
+
+		void update(byte[] data, int offset, int length);
+
+		void update(ByteBuffer data);
+
+		/**
+		 * @return lower case hex representation
+		 */
+		String digest();
+
+	}
+
+	private static class MessageDigestHasher implements Hasher {
+
+		private final MessageDigest digest;
+
+		MessageDigestHasher(String algorithm) {
+			try {
+				digest = MessageDigest.getInstance(algorithm);
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException("unsupported algorithm: " + algorithm, e);
+			}
+		}
+
+		@Override
+		public void update(byte[] data, int offset, int length) {
+			digest.update(data, offset, length);
+		}
+
+		@Override
+		public void update(ByteBuffer data) {
+			digest.update(data);
+		}
+
+		@Override
+		public String digest() {
+			return Hex.encodeHexString(digest.digest());
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.st.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import com.st.maven.fingerprint.DigestAlgorithm.Hasher;
+
+/**
+ * Calculates fingerprints of files. Every file is hashed at most once, even
+ * if requested concurrently.
+ */
+class FileHasher {
+
+	// files bigger than this are memory mapped
+	private static final long MAPPED_THRESHOLD = 1024 * 1024L;
+	private static final long MAPPED_REGION_SIZE = 64 * 1024 * 1024L;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+	private final DigestAlgorithm algorithm;
+	private final ConcurrentMap<String, CompletableFuture<String>> hashes = new ConcurrentHashMap<>();
+
+	FileHasher(DigestAlgorithm algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	String hash(File file) throws MojoExecutionException {
+		String path = Util.normalize(file);
+		CompletableFuture<String> result = hashes.get(path);
+		if (result == null) {
+			CompletableFuture<String> created = new CompletableFuture<>();
+			result = hashes.putIfAbsent(path, created);
+			if (result == null) {
+				try {
+					created.complete(hashFile(file));
+				} catch (MojoExecutionException e) {
+					// let other threads retry and fail on their own
+					hashes.remove(path, created);
+					created.completeExceptionally(e);
+					throw e;
+				}
+				return created.join();
+			}
+		}
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("interrupted", e);
+		} catch (ExecutionException e) {
+			throw new MojoExecutionException("unable to calculate hash for file: " + file.getAbsolutePath(), e.getCause());
+		}
+	}
+
+	/**
+	 * Forgets hashes of the changed files
+	 * 
+	 * @param paths normalized paths
+	 */
+	void invalidate(Collection<String> paths) {
+		hashes.keySet().removeAll(paths);
+	}
+
+	Hasher newHasher() {
+		return algorithm.newHasher();
+	}
+
+	String hash(byte[] data) {
+		Hasher hasher = algorithm.newHasher();
+		hasher.update(data, 0, data.length);
+		return hasher.digest();
+	}
+
+	private String hashFile(File file) throws MojoExecutionException {
+		Hasher hasher = algorithm.newHasher();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > MAPPED_THRESHOLD) {
+				for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+					hasher.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position)));
+				}
+			} else {
+				ByteBuffer buffer = BUFFERS.get();
+				buffer.clear();
+				while (channel.read(buffer) != -1) {
+					buffer.flip();
+					hasher.update(buffer);
+					buffer.clear();
+				}
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to calculate hash for file: " + file.getAbsolutePath(), e);
+		}
+		return hasher.digest();
+	}
+}
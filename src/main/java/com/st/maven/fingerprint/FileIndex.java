@@ -0,0 +1,146 @@
+package com.st.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Files and directories of the source directory. Built with a single walk, so
+ * that existence checks and file attributes don't hit the file system again.
+ */
+class FileIndex {
+
+	private static final Comparator<Entry> ORDER = Comparator.comparing(o -> o.relativePath);
+
+	private String rootPrefix;
+	private final Map<String, Entry> files = new HashMap<>();
+	private final List<Entry> orderedFiles = new ArrayList<>();
+	private final List<String> directories = new ArrayList<>();
+
+	static FileIndex create(File root) throws IOException {
+		FileIndex result = new FileIndex();
+		Path rootPath = root.toPath();
+		String rootPrefix = Util.normalize(root);
+		result.rootPrefix = rootPrefix;
+		Files.walkFileTree(rootPath, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				if (!dir.equals(rootPath)) {
+					result.directories.add(Util.normalize(dir.toFile()).substring(rootPrefix.length()));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (!attrs.isRegularFile()) {
+					return FileVisitResult.CONTINUE;
+				}
+				File curFile = file.toFile();
+				String path = Util.normalize(curFile);
+				Entry entry = new Entry(curFile, path, path.substring(rootPrefix.length()), attrs.size(), attrs.lastModifiedTime().toMillis());
+				result.files.put(path, entry);
+				result.orderedFiles.add(entry);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+				// symbolic link to the parent directory
+				if (exc instanceof FileSystemLoopException) {
+					return FileVisitResult.CONTINUE;
+				}
+				throw exc;
+			}
+		});
+		Collections.sort(result.orderedFiles, ORDER);
+		// parent directories first
+		Collections.sort(result.directories);
+		return result;
+	}
+
+	/**
+	 * Replaces entry of the created, modified or deleted file with its current
+	 * attributes
+	 * 
+	 * @param file file within the root
+	 * @return false if file is a directory or was a directory before deletion.
+	 *         Index is not changed then
+	 */
+	boolean update(File file) throws IOException {
+		String path = Util.normalize(file);
+		String relativePath = path.substring(rootPrefix.length());
+		BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			attrs = null;
+		}
+		if (attrs != null ? attrs.isDirectory() : directories.contains(relativePath)) {
+			return false;
+		}
+		Entry previous = files.remove(path);
+		if (previous != null) {
+			orderedFiles.remove(Collections.binarySearch(orderedFiles, previous, ORDER));
+		}
+		if (attrs != null && attrs.isRegularFile()) {
+			Entry entry = new Entry(file, path, relativePath, attrs.size(), attrs.lastModifiedTime().toMillis());
+			files.put(path, entry);
+			orderedFiles.add(-Collections.binarySearch(orderedFiles, entry, ORDER) - 1, entry);
+		}
+		return true;
+	}
+
+	/**
+	 * @param path normalized absolute path
+	 * @return entry or null if file doesn't exist
+	 */
+	Entry get(String path) {
+		return files.get(path);
+	}
+
+	List<Entry> getFiles() {
+		return Collections.unmodifiableList(orderedFiles);
+	}
+
+	/**
+	 * @return directories relative to the root
+	 */
+	List<String> getDirectories() {
+		return Collections.unmodifiableList(directories);
+	}
+
+	static class Entry {
+
+		final File file;
+		// normalized absolute path
+		final String path;
+		// path relative to the root. Starts with separator
+		final String relativePath;
+		final long size;
+		final long lastModified;
+
+		Entry(File file, String path, String relativePath, long size, long lastModified) {
+			this.file = file;
+			this.path = path;
+			this.relativePath = relativePath;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+	}
+}
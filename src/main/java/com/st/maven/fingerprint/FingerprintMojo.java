@@ -1,49 +1,67 @@
 package com.st.maven.fingerprint;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import com.st.maven.fingerprint.BuildMetrics.Phase;
+
 @Mojo(name = "generate", defaultPhase = LifecyclePhase.PACKAGE)
 public class FingerprintMojo extends AbstractMojo {
 
-	/*
-	 * All resources should have absolute paths: Valid: <img src="/img/test.png"> .
-	 * Invalid: <img src="test.png"> All resources should point to existing files
-	 * without any pre-processing: Valid: <img src="/img/test.png"> . Invalid: <img
-	 * src="<c:if test="${var}">/img/test.png</c:if>"
-	 */
-	private static final Pattern LINK_PATTERN = Pattern.compile("(<link[^>]+href=[\"'])(.*?)([\"'][^>]*>)");
-	private static final Pattern SCRIPT_PATTERN = Pattern.compile("([\"'])([^\\s]*?\\.js)([\"'])");
-	private static final Pattern IMG_PATTERN = Pattern.compile("(<img[^>]+src=[\"'])(.*?)([\"'][^>]+>)");
-	private static final Pattern CSS_URL_PATTERN = Pattern.compile("(url\\(\\s*[\"']?)(.*?)([\"']?\\s*\\))");
-	private static final Pattern JSTL_URL_PATTERN = Pattern.compile("(<c:url[^>]+value=\")(.*?)(\"[^>]+>)");
-	private static final Pattern DOLLAR_SIGN = Pattern.compile("\\$");
-
 	// this is very specific and most commonly used .jsp expression
 	private static final String PAGE_CONTEXT_PREFIX = "${pageContext.request.contextPath}";
-	private static final String PAGE_CONTEXT_PREFIX_ESCAPED = "\\$\\{pageContext.request.contextPath\\}";
 
 	/**
 	 * target directory
@@ -58,11 +76,20 @@ public class FingerprintMojo extends AbstractMojo {
 	private File sourceDirectory;
 
 	/**
-	 * Exclude resources
+	 * Exclude resources. Links containing the rule are not rewritten. Rules
+	 * with glob: prefix match the whole link (* doesn't match /, ** matches
+	 * anything), rules with regex: prefix match any part of the link
 	 */
 	@Parameter
 	private List<String> excludeResources;
 
+	/**
+	 * Links matching these rules are never excluded. The same syntax as for
+	 * excludeResources
+	 */
+	@Parameter
+	private List<String> includeResources;
+
 	@Parameter
 	private List<String> extensionsToFilter;
 
@@ -78,20 +105,329 @@ public class FingerprintMojo extends AbstractMojo {
 	@Parameter
 	private boolean minifyCss = true;
 
+	/**
+	 * Fingerprinted filename. Supports [hash], [hash:N] (first N characters of
+	 * hash), [name] and [ext]
+	 */
 	@Parameter(defaultValue = "[hash][name].[ext]")
 	private String namePattern;
 
 	/**
-	 * CDN url
+	 * Algorithm to calculate fingerprint: MD5, SHA256 or XXHASH64
+	 */
+	@Parameter
+	private DigestAlgorithm digestAlgorithm = DigestAlgorithm.MD5;
+
+	/**
+	 * CDN url. Comma separated list of hosts shards resources between them
+	 * by fingerprint, so every resource always has the same host
 	 */
 	@Parameter
 	private String cdn;
 
-	private final Set<String> processedFiles = new HashSet<>();
-	private final Map<String, String> sourceToFingerprintedTarget = new HashMap<>();
+	/**
+	 * Number of threads to process files. Independent files are processed
+	 * concurrently, while referenced files are always processed before the
+	 * files referencing them. Use 1 to process files in the calling thread.
+	 */
+	@Parameter
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Write pre-compressed siblings of processed files: GZIP (.gz) and/or
+	 * DEFLATE (.deflate). Siblings are written only if they are smaller than
+	 * the file
+	 */
+	@Parameter
+	private Set<Compression> precompress;
+
+	/**
+	 * Minimum size in bytes of processed file to pre-compress
+	 */
+	@Parameter
+	private int precompressThreshold = 1024;
+
+	/**
+	 * Directory of the minification cache. Could be shared between builds
+	 * and modules, for example ${user.home}/.m2/fingerprint-cache. Cache is
+	 * disabled if not set
+	 */
+	@Parameter
+	private File minificationCacheDirectory;
+
+	/**
+	 * Maximum size of the minification cache in bytes. Least recently used
+	 * entries are removed first
+	 */
+	@Parameter
+	private long minificationCacheSize = 256 * 1024 * 1024L;
+
+	/**
+	 * Minify JS and CSS in the long-lived process shared by executions and
+	 * builds, so yuicompressor stays JIT-warm. Process is started on demand.
+	 * Files are minified in-process if it is unavailable
+	 */
+	@Parameter
+	private boolean minificationDaemon = false;
+
+	/**
+	 * Minification process exits if there were no jobs for this number of
+	 * seconds
+	 */
+	@Parameter
+	private long minificationDaemonIdleTimeout = 600;
+
+	/**
+	 * Directory with the port and the output of the minification process.
+	 * Created accessible only by the owner. Directory of another user is not
+	 * used
+	 */
+	@Parameter(defaultValue = "${user.home}/.m2/fingerprint-daemon")
+	private File minificationDaemonDirectory;
+
+	/**
+	 * How to copy resources which are not processed: STREAM, TRANSFER, REFLINK
+	 * or LINK (hard link). Resources already copied by the previous build are
+	 * not copied again.
+	 */
+	@Parameter
+	private CopyStrategy copyStrategy = CopyStrategy.TRANSFER;
+
+	/**
+	 * Resources referenced by url() in stylesheets and not bigger than this
+	 * (in bytes) are inlined as base64 data uris. Use 0 to disable
+	 */
+	@Parameter
+	private long inlineMaxSize = 0;
+
+	/**
+	 * Maximum length of the data uris inlined into a single stylesheet. The
+	 * rest of the resources are referenced as usual
+	 */
+	@Parameter
+	private long inlineBudget = 32 * 1024;
+
+	/**
+	 * Mime types of the inlined resources. image/png, image/gif, image/jpeg,
+	 * image/svg+xml and image/webp by default
+	 */
+	@Parameter
+	private Set<String> inlineTypes;
+
+	/**
+	 * Replace @import of local stylesheets with their contents recursively,
+	 * so browsers don't discover imported stylesheets one after another.
+	 * Relative urls of the imported stylesheets are rebased
+	 */
+	@Parameter
+	private boolean flattenCssImports = false;
+
+	/**
+	 * Rewrite references to resources with the same content to a single
+	 * canonical resource. Duplicates are processed and copied once. LINK
+	 * writes duplicates as hard links to the canonical output, OMIT doesn't
+	 * write them. Pages and stylesheets are never deduplicated, since their
+	 * relative links depend on the location
+	 */
+	@Parameter
+	private Deduplication deduplication;
+
+	/**
+	 * Don't write resources which are not reachable from the entry points by
+	 * the links found in the processed files. Files in WEB-INF and META-INF
+	 * are always written
+	 */
+	@Parameter
+	private boolean pruneUnreferenced = false;
+
+	/**
+	 * Entry points of pruneUnreferenced matched against the path of the file,
+	 * for example /index.html. The same syntax as excludeResources. Pages
+	 * (htmlExtensions) by default
+	 */
+	@Parameter
+	private List<String> entryPoints;
+
+	/**
+	 * Resources which are never pruned, for example loaded dynamically by
+	 * scripts. The same syntax as excludeResources. Their links are followed
+	 * as well
+	 */
+	@Parameter
+	private List<String> keepResources;
+
+	/**
+	 * Pruned resources and their sizes
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/fingerprint-pruned.txt")
+	private File pruneReport;
+
+	/**
+	 * Bundle adjacent local scripts and stylesheets of html pages. Identical
+	 * bundles of different pages are created once
+	 */
+	@Parameter
+	private boolean bundleAdjacent = false;
+
+	/**
+	 * Bundles declared explicitly. Adjacent tags referencing all resources of
+	 * the bundle in the same order are replaced with a single tag
+	 */
+	@Parameter
+	private List<Bundle> bundles;
+
+	/**
+	 * Directory of the bundles created for adjacent tags
+	 */
+	@Parameter
+	private String bundleDirectory = "/bundle";
+
+	/**
+	 * Inject preload tags for the resources of these types into the head of
+	 * the pages: STYLE, SCRIPT, FONT (referenced by the stylesheets of the
+	 * page) and IMAGE. Scripts of module tags are preloaded with
+	 * modulepreload. Disabled if not set
+	 */
+	@Parameter
+	private Set<PreloadType> preload;
+
+	/**
+	 * Write preload hints of every page as Link headers in nginx map format,
+	 * so they could be sent as 103 Early Hints
+	 */
+	@Parameter
+	private File preloadHeadersFile;
+
+	/**
+	 * Write manifest with fingerprinted paths and hashes of the referenced
+	 * resources. Could be imported by other executions or loaded by the
+	 * application at runtime using {@link AssetManifest}
+	 */
+	@Parameter
+	private File manifestFile;
+
+	/**
+	 * Manifests of the executions which already processed some of the
+	 * resources, for example shared assets overlaid into this webapp. Such
+	 * resources are neither hashed nor minified again. Fingerprinted files are
+	 * taken from the source directory or from the target directory of the
+	 * manifest.
+	 */
+	@Parameter
+	private List<File> importManifests;
+
+	/**
+	 * Encoding of the processed resources. Platform encoding is used if not
+	 * set
+	 */
+	@Parameter(defaultValue = "${project.build.sourceEncoding}")
+	private String encoding;
+
+	/**
+	 * Resources bigger than this (in bytes) are processed as a stream: only a
+	 * window of the file is kept in memory. JavaScript and CSS minified by
+	 * yuicompressor are always processed in memory. Use -1 to disable
+	 */
+	@Parameter
+	private long streamingThreshold = 4 * 1024 * 1024L;
+
+	/**
+	 * Record time spent in each phase and statistics of every file
+	 */
+	@Parameter
+	private boolean metrics = false;
+
+	/**
+	 * Metrics report. Format is selected by the extension: json or csv
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/fingerprint-metrics.json")
+	private File metricsReport;
+
+	/**
+	 * Number of the slowest files to log when metrics are enabled
+	 */
+	@Parameter
+	private int metricsTopFiles = 10;
+
+	/**
+	 * Skip files which were not changed since the previous build. File is
+	 * processed again if its content, any resource it references or the plugin
+	 * configuration was changed.
+	 */
+	@Parameter
+	private boolean incremental = false;
+
+	/**
+	 * State of the previous build. Used only when incremental is enabled
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/fingerprint-build-state.txt")
+	private File buildStateFile;
+
+	/**
+	 * Write the optimized webapp into this zip archive, for example a war.
+	 * Resources which are not processed are written straight from the source
+	 * directory and not copied into the target directory. Entries are written
+	 * in the order of the source files with the same timestamp, so archive is
+	 * reproducible. Already compressed resources are stored
+	 */
+	@Parameter
+	private File archiveFile;
+
+	/**
+	 * Timestamp of the archive entries: ISO-8601 date with offset or seconds
+	 * since epoch. 1980-02-01T00:00:00Z if not set
+	 */
+	@Parameter(defaultValue = "${project.build.outputTimestamp}")
+	private String outputTimestamp;
+
+	private final Set<String> scheduledFiles = new HashSet<>();
+	private final Set<String> referencedFiles = new HashSet<>();
+	private final Set<String> processedFiles = ConcurrentHashMap.newKeySet();
+	private final Map<String, String> sourceToFingerprintedTarget = new ConcurrentHashMap<>();
+	private final Map<String, String> outputFingerprints = new ConcurrentHashMap<>();
+	private final Map<String, Set<String>> fileReferences = new ConcurrentHashMap<>();
+	private final Set<String> missingLinks = ConcurrentHashMap.newKeySet();
+	private final Map<String, String> linkFingerprints = new ConcurrentHashMap<>();
+	private final Map<String, ImportedAsset> importedAssets = new HashMap<>();
+	// sources and outputs of the imported assets found in the source
+	// directory. They are not processed
+	private final Set<String> importedSources = new HashSet<>();
+	private final Set<String> importedOutputs = new HashSet<>();
+	private final ConcurrentMap<String, CompletableFuture<String>> bundleLinks = new ConcurrentHashMap<>();
+	// unreachable from the entry points. Normalized paths
+	private final Set<String> prunedFiles = new HashSet<>();
+	// fonts referenced by the stylesheet link
+	private final ConcurrentMap<String, List<String>> stylesheetFonts = new ConcurrentHashMap<>();
+	// duplicate to its canonical resource. Normalized paths
+	private final Map<String, String> duplicates = new HashMap<>();
+	private Bundler bundler;
+	private ResourceMatcher resourceMatcher;
+	private CdnShards cdnShards;
+	private DataUriInliner inliner;
+	private CssImportFlattener cssImportFlattener;
+	private FileIndex sourceIndex;
+	private FileHasher hasher;
+	private MinificationCache minificationCache;
+	private MinificationClient minificationClient;
+	private ArchiveWriter archiveWriter;
+	// archive entries without source file: bundles, imported assets and
+	// duplicates
+	private final Queue<ArchiveWriter.Entry> archiveEntries = new ConcurrentLinkedQueue<>();
+	private BuildMetrics buildMetrics = BuildMetrics.DISABLED;
+	private Charset charset;
+	private String sourcePathPrefix;
+	private String targetPathPrefix;
+	private BuildState previousState;
+	private BuildState currentState;
+	// kept in memory between the executions of the watch goal
+	private boolean watching;
+	private BuildState lastState;
+	// maps of the last execution are complete and could be updated
+	private boolean updatable;
 
 	@Override
 	public void execute() throws MojoExecutionException {
+		reset();
 		if (!sourceDirectory.isDirectory()) {
 			throw new MojoExecutionException("source directory is not a directory: " + sourceDirectory.getAbsolutePath());
 		}
@@ -105,235 +441,1957 @@ public class FingerprintMojo extends AbstractMojo {
 			getLog().info("no files to optimize found");
 			return;
 		}
-		List<File> filesToProcess = new ArrayList<>();
-		findFilesRecursively(filesToProcess, sourceDirectory);
+		if (metrics) {
+			buildMetrics = new BuildMetrics();
+		}
+		if (encoding == null) {
+			charset = Charset.defaultCharset();
+			getLog().warn("encoding is not set, using platform encoding: " + charset.name());
+		} else {
+			try {
+				charset = Charset.forName(encoding);
+			} catch (IllegalArgumentException e) {
+				throw new MojoExecutionException("unsupported encoding: " + encoding, e);
+			}
+		}
+		try {
+			resourceMatcher = new ResourceMatcher(excludeResources, includeResources);
+		} catch (IllegalArgumentException e) {
+			throw new MojoExecutionException("invalid resource rule: " + e.getMessage(), e);
+		}
+		if (cdn != null) {
+			try {
+				cdnShards = new CdnShards(cdn);
+			} catch (IllegalArgumentException e) {
+				throw new MojoExecutionException("invalid cdn: " + cdn, e);
+			}
+		}
+		try (BuildMetrics.Timer timer = buildMetrics.start(Phase.SCAN)) {
+			sourceIndex = FileIndex.create(sourceDirectory);
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to read source directory: " + sourceDirectory.getAbsolutePath(), e);
+		}
+		hasher = new FileHasher(digestAlgorithm);
+		if (importManifests != null) {
+			loadManifests();
+		}
+		List<File> filesToProcess = findFilesToProcess();
 		if (filesToProcess.isEmpty()) {
 			getLog().info("no files to optimize found");
 			return;
 		}
-		Collections.sort(filesToProcess, new FileComparator(htmlExtensions));
 
-		mkdirsRecursively(sourceDirectory, targetDirectory);
+		mkdirs();
 
-		for (File cur : filesToProcess) {
-			try {
-				process(cur);
-				processedFiles.add(cur.getAbsolutePath());
-			} catch (Exception e) {
-				getLog().error("unable to process: " + cur.getAbsolutePath(), e);
-				throw new MojoExecutionException("unable to process: " + cur.getAbsolutePath(), e);
-			}
+		if (inlineMaxSize > 0) {
+			inliner = new DataUriInliner(inlineMaxSize, inlineBudget, inlineTypes != null ? inlineTypes : DataUriInliner.DEFAULT_TYPES);
 		}
-
-		deepCopyRemainingFiles(sourceDirectory, targetDirectory);
-
-		for (Entry<String, String> cur : sourceToFingerprintedTarget.entrySet()) {
-			File toMove = new File(targetDirectory, cur.getKey());
-			File dest = new File(targetDirectory, cur.getValue());
-			if (toMove.exists() && !toMove.renameTo(dest)) {
-				throw new MojoExecutionException("unable to move src: " + toMove.getAbsolutePath() + " dst: " + dest.getAbsolutePath());
-			}
+		if (flattenCssImports) {
+			cssImportFlattener = new CssImportFlattener(new ImportHandler());
 		}
-	}
-
-	private void process(File sourceFile) throws MojoExecutionException {
-		if (getLog().isDebugEnabled()) {
-			getLog().debug("processing file: " + sourceFile.getAbsolutePath());
+		if (bundleAdjacent || (bundles != null && !bundles.isEmpty())) {
+			bundler = new Bundler(bundleAdjacent, bundles, new BundleHandler());
 		}
-		String data = readFile(sourceFile);
-		StringBuffer outputFileData = new StringBuffer(data);
-		outputFileData = processPattern(LINK_PATTERN, outputFileData.toString(), sourceFile.getAbsolutePath());
-		outputFileData = processPattern(SCRIPT_PATTERN, outputFileData.toString(), sourceFile.getAbsolutePath());
-		outputFileData = processPattern(IMG_PATTERN, outputFileData.toString(), sourceFile.getAbsolutePath());
-		outputFileData = processPattern(CSS_URL_PATTERN, outputFileData.toString(), sourceFile.getAbsolutePath());
-		outputFileData = processPattern(JSTL_URL_PATTERN, outputFileData.toString(), sourceFile.getAbsolutePath());
-		String processedData = null;
-		String extension = Util.getExtension(sourceFile.getName());
-		if (htmlExtensions != null && !htmlExtensions.isEmpty() && extension != null && htmlExtensions.contains(extension) && minifyHtml) {
-			getLog().info("minifying html: " + sourceFile.getAbsolutePath());
-			processedData = HtmlMinifier.minify(outputFileData.toString());
-		} else if (sourceFile.getName().contains(".min.")) {
-			getLog().info("ignoring already minified resource: " + sourceFile.getAbsolutePath());
-		} else if (sourceFile.getName().endsWith(".js") && minifyJs) {
-			processedData = outputFileData.toString();
-			getLog().info("minifying javascript: " + sourceFile.getAbsolutePath());
-			processedData = Compressor.compressJavaScript(new StringReader(processedData), getLog());
-		} else if (sourceFile.getName().endsWith(".css") && minifyCss) {
-			processedData = outputFileData.toString();
-			getLog().info("minifying css: " + sourceFile.getAbsolutePath());
-			processedData = Compressor.compressCSS(new StringReader(processedData), getLog());
+		if (minificationCacheDirectory != null) {
+			minificationCache = new MinificationCache(minificationCacheDirectory, minificationCacheSize);
 		}
-
-		if (processedData == null) {
-			processedData = outputFileData.toString();
+		if (minificationDaemon) {
+			File directory = minificationDaemonDirectory;
+			if (directory == null) {
+				directory = new File(new File(System.getProperty("user.home"), ".m2"), "fingerprint-daemon");
+			}
+			minificationClient = new MinificationClient(directory, minificationDaemonIdleTimeout, getLog());
+		}
+		sourcePathPrefix = Util.normalize(sourceDirectory);
+		targetPathPrefix = Util.normalize(targetDirectory);
+		if (incremental) {
+			try (BuildMetrics.Timer timer = buildMetrics.start(Phase.STATE)) {
+				loadBuildState();
+			}
 		}
 
-		File targetFile = new File(targetDirectory, Util.stripSourceDirectory(sourceDirectory, sourceFile));
-		try (FileWriter w = new FileWriter(targetFile)) {
-			IOUtils.write(processedData, w);
-		} catch (IOException e) {
-			throw new MojoExecutionException("unable to file: " + targetFile.getAbsolutePath(), e);
+		if (archiveFile != null) {
+			startArchive();
 		}
-	}
 
-	private StringBuffer processPattern(Pattern p, String data, String sourceOfData) throws MojoExecutionException {
-		StringBuffer outputFileData = new StringBuffer();
-		Matcher m = p.matcher(data);
-		while (m.find()) {
-			String curLink = m.group(2);
-			if (getLog().isDebugEnabled()) {
-				for (int i = 0; i < m.groupCount(); ++i) {
-					getLog().debug("group " + i + ": " + m.group(i));
+		ExecutorService executor = null;
+		if (threads > 1) {
+			executor = Executors.newFixedThreadPool(threads);
+		}
+		try {
+			if (deduplication != null) {
+				try (BuildMetrics.Timer timer = buildMetrics.start(Phase.HASH)) {
+					findDuplicates();
 				}
 			}
-			if (isExcluded(curLink)) {
-				getLog().info("resource excluded: " + curLink);
-				// escape dollar sign in result output
-				curLink = DOLLAR_SIGN.matcher(curLink).replaceAll("\\\\\\$");
-				m.appendReplacement(outputFileData, "$1" + curLink + "$3");
-				continue;
-			}
-			int queryIndex = curLink.indexOf('?');
-			String query = "";
-			if (queryIndex != -1) {
-				query = curLink.substring(queryIndex);
-				curLink = curLink.substring(0, queryIndex);
-			} else {
-				queryIndex = curLink.indexOf('#');
-				if (queryIndex != -1) {
-					query = curLink.substring(queryIndex);
-					curLink = curLink.substring(0, queryIndex);
+			if (archiveWriter != null) {
+				// written after all other entries or not written at all
+				for (String cur : duplicates.keySet()) {
+					archiveWriter.submit(cur, Collections.emptyList());
 				}
 			}
-			String prefix = "";
-			if (curLink.startsWith(PAGE_CONTEXT_PREFIX)) {
-				prefix = PAGE_CONTEXT_PREFIX_ESCAPED;
-				curLink = curLink.substring(PAGE_CONTEXT_PREFIX.length());
+			ReferenceGraph graph = buildReferenceGraph(filesToProcess, executor);
+			if (pruneUnreferenced) {
+				pruneUnreferenced();
+			}
+			ProcessingEngine.run(graph.getComponents(), executor, this::processFile);
+			deepCopyRemainingFiles(sourceIndex.getFiles(), executor);
+			if (!duplicates.isEmpty()) {
+				writeDuplicates();
+			}
+			if (archiveWriter != null) {
+				finishArchive();
 			}
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			if (archiveWriter != null) {
+				archiveWriter.abort();
+			}
+			if (minificationClient != null) {
+				minificationClient.close();
+			}
+		}
 
-			String targetPath = sourceToFingerprintedTarget.get(curLink);
-			if (targetPath == null) {
-				// try fingerprinted file first
-				// if out of scope, then calculate fingerprint from the source file
-				File curLinkFile = new File(targetDirectory, curLink);
-				if (!curLinkFile.exists()) {
-					curLinkFile = new File(sourceDirectory, curLink);
-				}
-				if (!curLinkFile.exists()) {
-					getLog().warn("resource file doesn't exist: " + curLink + " found in: " + sourceOfData);
-					// escape dollar sign in result output
-					curLink = DOLLAR_SIGN.matcher(curLink).replaceAll("\\\\\\$");
-					m.appendReplacement(outputFileData, "$1" + prefix + curLink + "$3");
+		finish();
+	}
+
+	/**
+	 * Processes again only the changed files and the files referencing them
+	 * directly or transitively. The rest of the build is taken from the
+	 * previous execution. Changes of directories and imported assets,
+	 * bundles, deduplication, pruning and archive depend on the whole webapp,
+	 * so the full build is executed instead.
+	 * 
+	 * @param changed created, modified or deleted files. null if unknown
+	 */
+	void update(Set<File> changed) throws MojoExecutionException {
+		if (changed == null || !updatable || archiveFile != null || deduplication != null || pruneUnreferenced || bundler != null) {
+			execute();
+			return;
+		}
+		updatable = false;
+		buildMetrics = metrics ? new BuildMetrics() : BuildMetrics.DISABLED;
+		Set<String> changedPaths = new HashSet<>();
+		try (BuildMetrics.Timer timer = buildMetrics.start(Phase.SCAN)) {
+			for (File cur : changed) {
+				if (relativize(sourcePathPrefix, cur) == null) {
 					continue;
 				}
-				logIfRelativePath(curLink);
-				targetPath = Util.generateTargetResourceFilename(curLinkFile, curLink, namePattern);
-				logIfRelativePath(targetPath);
-
-				sourceToFingerprintedTarget.put(curLink, targetPath);
+				String path = Util.normalize(cur);
+				if (importedSources.contains(path) || importedOutputs.contains(path) || !sourceIndex.update(cur)) {
+					execute();
+					return;
+				}
+				changedPaths.add(path);
 			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to read source directory: " + sourceDirectory.getAbsolutePath(), e);
+		}
+		hasher.invalidate(changedPaths);
+		Set<String> affected = Reachability.findReachable(changedPaths, getReverseReferences(), Collections.emptyMap());
+		previousState = currentState;
+		currentState = new BuildState(previousState.getConfiguration());
+		// entries of the processed files are replaced, so the rest is shared
+		for (BuildState.Entry cur : previousState.getEntries().values()) {
+			currentState.put(cur);
+		}
+		invalidate(affected);
+		if (inlineMaxSize > 0) {
+			inliner = new DataUriInliner(inlineMaxSize, inlineBudget, inlineTypes != null ? inlineTypes : DataUriInliner.DEFAULT_TYPES);
+		}
+		if (flattenCssImports) {
+			cssImportFlattener = new CssImportFlattener(new ImportHandler());
+		}
 
-			String targetURL;
-			if (cdn == null) {
-				targetURL = "$1" + prefix + targetPath + query + "$3";
+		Set<String> previouslyReferenced = new HashSet<>(referencedFiles);
+		referencedFiles.clear();
+		for (Set<String> cur : fileReferences.values()) {
+			referencedFiles.addAll(cur);
+		}
+		List<File> filesToProcess = new ArrayList<>();
+		List<FileIndex.Entry> toCopy = new ArrayList<>();
+		for (String cur : affected) {
+			FileIndex.Entry indexed = sourceIndex.get(cur);
+			if (indexed == null) {
+				scheduledFiles.remove(cur);
+			} else if (isFiltered(indexed)) {
+				scheduledFiles.add(cur);
+				filesToProcess.add(indexed.file);
+				referencedFiles.addAll(findReferences(indexed.file));
 			} else {
-				targetURL = "$1" + cdn + prefix + targetPath + query + "$3";
+				toCopy.add(indexed);
 			}
+		}
+		// file referenced for the first time or not referenced anymore gets
+		// another output name
+		for (String cur : scheduledFiles) {
+			if (!affected.contains(cur) && previouslyReferenced.contains(cur) != referencedFiles.contains(cur)) {
+				File file = sourceIndex.get(cur).file;
+				invalidate(Collections.singleton(cur));
+				findReferences(file);
+				filesToProcess.add(file);
+			}
+		}
+		ReferenceGraph graph = new ReferenceGraph(filesToProcess, new FileComparator(htmlExtensions));
+		for (File cur : filesToProcess) {
+			for (String curReference : fileReferences.get(Util.normalize(cur))) {
+				graph.addReference(cur, curReference);
+			}
+		}
 
-			m.appendReplacement(outputFileData, targetURL);
+		ExecutorService executor = null;
+		if (threads > 1) {
+			executor = Executors.newFixedThreadPool(threads);
+		}
+		try {
+			ProcessingEngine.run(graph.getComponents(), executor, this::processFile);
+			deepCopyRemainingFiles(toCopy, executor);
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			if (minificationClient != null) {
+				minificationClient.close();
+			}
 		}
-		m.appendTail(outputFileData);
-		return outputFileData;
+		finish();
 	}
 
-	private void logIfRelativePath(String path) {
-		if (path.length() != 0 && path.charAt(0) != '/') {
-			getLog().warn("relative path detected: " + path);
+	// referenced file to the files referencing it
+	private Map<String, Set<String>> getReverseReferences() {
+		Map<String, Set<String>> result = new HashMap<>();
+		for (Entry<String, Set<String>> cur : fileReferences.entrySet()) {
+			for (String curReference : cur.getValue()) {
+				result.computeIfAbsent(curReference, k -> new HashSet<>()).add(cur.getKey());
+			}
 		}
+		return result;
 	}
 
-	private boolean isExcluded(String path) {
-		if (excludeResources == null) {
-			return false;
-		}
-		for (String curExclude : excludeResources) {
-			if (path.contains(curExclude)) {
-				return true;
-			}
+	// forgets outputs and fingerprints of the files, so they are processed
+	// again
+	private void invalidate(Set<String> paths) {
+		for (String cur : paths) {
+			currentState.remove(cur.substring(sourcePathPrefix.length()));
 		}
-		return false;
+		processedFiles.removeAll(paths);
+		outputFingerprints.keySet().removeAll(paths);
+		fileReferences.keySet().removeAll(paths);
+		// links are not normalized
+		Predicate<String> isInvalidated = link -> paths.contains(Util.normalize(new File(sourceDirectory, link)));
+		sourceToFingerprintedTarget.keySet().removeIf(isInvalidated);
+		linkFingerprints.keySet().removeIf(isInvalidated);
+		missingLinks.removeIf(isInvalidated);
+		stylesheetFonts.keySet().removeIf(isInvalidated);
 	}
 
-	private void mkdirsRecursively(File curSrcDirectory, File curDestDirectory) {
-		if (!curSrcDirectory.isDirectory()) {
+	private void processFile(File file) throws MojoExecutionException {
+		// canonical resource is processed instead
+		if (duplicates.containsKey(Util.normalize(file)) || prunedFiles.contains(Util.normalize(file))) {
 			return;
 		}
-		File[] subFiles = curSrcDirectory.listFiles();
-		for (File curFile : subFiles) {
-			if (!curFile.isDirectory()) {
-				continue;
+		try {
+			if (!skipUnchanged(file)) {
+				process(file);
 			}
-			File newDir = new File(curDestDirectory, curFile.getName());
-			if (!newDir.exists() && !newDir.mkdirs()) {
-				getLog().warn("unable to create directory in outputDirectory: " + newDir);
-				continue;
+			processedFiles.add(Util.normalize(file));
+			if (archiveWriter != null) {
+				File targetFile = getTargetFile(sourceIndex.get(Util.normalize(file)));
+				archiveWriter.submit(Util.normalize(file), getArchiveEntries(targetFile, relativize(targetPathPrefix, targetFile)));
 			}
-			mkdirsRecursively(curFile, newDir);
+		} catch (Exception e) {
+			getLog().error("unable to process: " + file.getAbsolutePath(), e);
+			throw new MojoExecutionException("unable to process: " + file.getAbsolutePath(), e);
 		}
 	}
 
-	private void deepCopyRemainingFiles(File srcDir, File dstDir) throws MojoExecutionException {
-		File[] srcFiles = srcDir.listFiles();
-		for (File curFile : srcFiles) {
-			if (curFile.isDirectory()) {
-				deepCopyRemainingFiles(curFile, new File(dstDir, curFile.getName()));
-				continue;
-			}
+	private void finish() throws MojoExecutionException {
+		if (manifestFile != null) {
+			saveManifest();
+		}
 
-			if (processedFiles.contains(curFile.getAbsolutePath())) {
-				continue;
+		if (preloadHeadersFile != null && isPreloadEnabled()) {
+			savePreloadHeaders();
+		}
+
+		logResourceRules();
+		if (cdnShards != null && cdnShards.size() > 1) {
+			logCdnShards();
+		}
+
+		if (minificationCache != null) {
+			getLog().info("minification cache hits: " + minificationCache.getHits() + " misses: " + minificationCache.getMisses() + " saved: " + minificationCache.getSavedMillis() + "ms");
+			try {
+				minificationCache.evict();
+			} catch (IOException e) {
+				getLog().warn("unable to cleanup minification cache: " + minificationCacheDirectory.getAbsolutePath(), e);
 			}
+		}
 
-			try (FileInputStream fis = new FileInputStream(curFile); FileOutputStream fos = new FileOutputStream(new File(dstDir, curFile.getName()))) {
-				IOUtils.copy(fis, fos);
+		if (incremental) {
+			try (BuildMetrics.Timer timer = buildMetrics.start(Phase.STATE)) {
+				removeStaleOutputs();
+				currentState.save(buildStateFile);
 			} catch (IOException e) {
-				throw new MojoExecutionException("unable to copy", e);
+				throw new MojoExecutionException("unable to save build state: " + buildStateFile.getAbsolutePath(), e);
 			}
 		}
-	}
 
-	private static String readFile(File file) throws MojoExecutionException {
-		try (FileReader r = new FileReader(file)) {
-			return IOUtils.toString(r);
-		} catch (Exception e) {
-			throw new MojoExecutionException("unable to read file: " + file.getAbsolutePath(), e);
+		if (watching) {
+			lastState = currentState;
+			updatable = true;
+		}
+
+		if (buildMetrics.isEnabled()) {
+			saveMetrics();
 		}
 	}
 
-	private void findFilesRecursively(List<File> output, File source) {
-		if (!source.isDirectory()) {
+	// unused rules could be removed
+	private void logResourceRules() {
+		List<ResourceRules.Rule> excludes = resourceMatcher.getExcludes();
+		List<ResourceRules.Rule> includes = resourceMatcher.getIncludes();
+		if (excludes.isEmpty() && includes.isEmpty()) {
 			return;
 		}
-		File[] subFiles = source.listFiles();
-		for (File curFile : subFiles) {
-			if (curFile.isDirectory()) {
-				findFilesRecursively(output, curFile);
-				continue;
-			}
+		getLog().info("resource rule hits:");
+		for (ResourceRules.Rule cur : excludes) {
+			getLog().info("  " + cur.getHits() + " exclude " + cur.rule);
+		}
+		for (ResourceRules.Rule cur : includes) {
+			getLog().info("  " + cur.getHits() + " include " + cur.rule);
+		}
+	}
+
+	private void logCdnShards() {
+		getLog().info("cdn shards:");
+		for (Entry<String, Integer> cur : cdnShards.getDistribution().entrySet()) {
+			getLog().info("  " + cur.getValue() + " " + cur.getKey());
+		}
+	}
+
+	private void saveMetrics() throws MojoExecutionException {
+		List<BuildMetrics.FileMetrics> slowest = buildMetrics.getSlowestFiles(metricsTopFiles);
+		if (!slowest.isEmpty()) {
+			getLog().info("slowest files:");
+			for (BuildMetrics.FileMetrics cur : slowest) {
+				getLog().info("  " + BuildMetrics.millis(cur.nanos) + "ms " + cur.action + " " + cur.path);
+			}
+		}
+		try {
+			buildMetrics.save(metricsReport);
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to save metrics: " + metricsReport.getAbsolutePath(), e);
+		}
+		getLog().info("metrics saved to: " + metricsReport.getAbsolutePath());
+	}
+
+	private void loadManifests() throws MojoExecutionException {
+		for (File cur : importManifests) {
+			AssetManifest manifest;
+			try {
+				manifest = AssetManifest.load(cur);
+			} catch (IOException e) {
+				throw new MojoExecutionException("unable to load manifest: " + cur.getAbsolutePath(), e);
+			}
+			for (Entry<String, AssetManifest.Asset> curAsset : manifest.getAssets().entrySet()) {
+				String link = curAsset.getKey();
+				AssetManifest.Asset asset = curAsset.getValue();
+				// the first manifest wins
+				if (importedAssets.containsKey(link)) {
+					continue;
+				}
+				FileIndex.Entry source = sourceIndex.get(Util.normalize(new File(sourceDirectory, link)));
+				if (source != null && !isSameSource(source, asset.source, manifest.getDigestAlgorithm())) {
+					getLog().info("resource overridden, ignoring manifest entry: " + link);
+					continue;
+				}
+				FileIndex.Entry output = sourceIndex.get(Util.normalize(new File(sourceDirectory, asset.path)));
+				File upstreamOutput = null;
+				if (output == null) {
+					if (manifest.getTargetDirectory() != null) {
+						upstreamOutput = new File(manifest.getTargetDirectory(), asset.path);
+					}
+					if (upstreamOutput == null || !upstreamOutput.isFile()) {
+						getLog().warn("fingerprinted resource not found, ignoring manifest entry: " + link);
+						continue;
+					}
+				} else {
+					importedOutputs.add(output.path);
+				}
+				if (source != null) {
+					importedSources.add(source.path);
+				}
+				String sourceHash = digestAlgorithm.name().equals(manifest.getDigestAlgorithm()) ? asset.source : null;
+				importedAssets.put(link, new ImportedAsset(asset, upstreamOutput, source != null, sourceHash));
+			}
+		}
+		getLog().info("assets imported: " + importedAssets.size());
+	}
+
+	/**
+	 * @param hash      hash of the upstream source
+	 * @param algorithm algorithm of the hash
+	 * @return true if local file is the same as the upstream source. Unknown
+	 *         upstream source is never the same
+	 */
+	private boolean isSameSource(FileIndex.Entry source, String hash, String algorithm) throws MojoExecutionException {
+		if (hash == null || algorithm == null) {
+			return false;
+		}
+		if (algorithm.equals(digestAlgorithm.name())) {
+			return hash.equals(hashSource(source));
+		}
+		DigestAlgorithm upstream;
+		try {
+			upstream = DigestAlgorithm.valueOf(algorithm);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		return hash.equals(new FileHasher(upstream).hash(source.file));
+	}
+
+	private void saveManifest() throws MojoExecutionException {
+		Map<String, AssetManifest.Asset> assets = new HashMap<>();
+		for (Entry<String, String> cur : sourceToFingerprintedTarget.entrySet()) {
+			FileIndex.Entry source = sourceIndex.get(Util.normalize(new File(sourceDirectory, cur.getKey())));
+			String sourceHash = null;
+			if (source != null) {
+				sourceHash = hashSource(source);
+			} else if (importedAssets.containsKey(cur.getKey())) {
+				sourceHash = importedAssets.get(cur.getKey()).sourceHash;
+			}
+			assets.put(cur.getKey(), new AssetManifest.Asset(cur.getValue(), linkFingerprints.get(cur.getKey()), sourceHash));
+		}
+		try {
+			new AssetManifest(targetPathPrefix, digestAlgorithm.name(), assets).save(manifestFile);
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to save manifest: " + manifestFile.getAbsolutePath(), e);
+		}
+	}
+
+	private void startArchive() throws MojoExecutionException {
+		long timestamp;
+		try {
+			timestamp = ArchiveWriter.parseTimestamp(outputTimestamp);
+		} catch (IllegalArgumentException e) {
+			throw new MojoExecutionException("invalid outputTimestamp: " + outputTimestamp, e);
+		}
+		List<String> sources = new ArrayList<>();
+		for (FileIndex.Entry cur : sourceIndex.getFiles()) {
+			sources.add(cur.path);
+		}
+		archiveWriter = new ArchiveWriter(archiveFile, timestamp, sources);
+		try {
+			archiveWriter.start();
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to create archive: " + archiveFile.getAbsolutePath(), e);
+		}
+		// replaced by the imported assets
+		for (String cur : importedSources) {
+			archiveWriter.submit(cur, Collections.emptyList());
+		}
+	}
+
+	private void finishArchive() throws MojoExecutionException {
+		List<ArchiveWriter.Entry> entries = new ArrayList<>(archiveEntries);
+		for (CompletableFuture<String> cur : bundleLinks.values()) {
+			String link = cur.getNow(null);
+			if (link != null) {
+				String targetPath = sourceToFingerprintedTarget.get(link);
+				entries.addAll(getArchiveEntries(new File(targetDirectory, targetPath), targetPath));
+			}
+		}
+		try (BuildMetrics.Timer timer = buildMetrics.start(Phase.WRITE)) {
+			archiveWriter.finish(entries);
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to write archive: " + archiveFile.getAbsolutePath(), e);
+		}
+		getLog().info("archive created: " + archiveFile.getAbsolutePath());
+	}
+
+	/**
+	 * @param targetPath path of the output in the archive
+	 * @return output together with its pre-compressed siblings
+	 */
+	private static List<ArchiveWriter.Entry> getArchiveEntries(File output, String targetPath) {
+		String name = getArchiveName(targetPath);
+		List<ArchiveWriter.Entry> result = new ArrayList<>();
+		result.add(new ArchiveWriter.Entry(name, output));
+		for (Compression cur : Compression.values()) {
+			File sibling = cur.getSibling(output);
+			if (sibling.isFile()) {
+				result.add(new ArchiveWriter.Entry(cur.getSibling(name), sibling));
+			}
+		}
+		return result;
+	}
+
+	// zip entries use forward slashes and have no leading slash
+	private static String getArchiveName(String targetPath) {
+		String result = targetPath.replace(File.separatorChar, '/');
+		if (result.startsWith("/")) {
+			return result.substring(1);
+		}
+		return result;
+	}
+
+	private void savePreloadHeaders() throws MojoExecutionException {
+		Map<String, String> headers = new TreeMap<>();
+		for (String cur : processedFiles) {
+			FileIndex.Entry indexed = sourceIndex.get(cur);
+			if (!isHtmlPage(indexed.file)) {
+				continue;
+			}
+			// hints of the pages skipped by the incremental build are taken
+			// from their outputs
+			String header = PreloadHints.getHeader(readFile(getTargetFile(indexed)), PAGE_CONTEXT_PREFIX);
+			if (header != null) {
+				headers.put(indexed.relativePath.replace(File.separatorChar, '/'), header);
+			}
+		}
+		try {
+			PreloadHints.saveNginxMap(preloadHeadersFile, headers);
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to save preload headers: " + preloadHeadersFile.getAbsolutePath(), e);
+		}
+	}
+
+	private void loadBuildState() throws MojoExecutionException {
+		String configuration = getConfigurationFingerprint();
+		currentState = new BuildState(configuration);
+		if (lastState != null && lastState.getConfiguration().equals(configuration)) {
+			previousState = lastState;
+			return;
+		}
+		try {
+			previousState = BuildState.load(buildStateFile, configuration);
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to load build state: " + buildStateFile.getAbsolutePath(), e);
+		}
+	}
+
+	private String getConfigurationFingerprint() {
+		StringBuilder result = new StringBuilder();
+		result.append(namePattern).append('\n');
+		result.append(digestAlgorithm).append('\n');
+		result.append(cdn).append('\n');
+		result.append(minifyHtml).append(',').append(minifyJs).append(',').append(minifyCss).append('\n');
+		result.append(excludeResources).append(',').append(includeResources).append('\n');
+		if (htmlExtensions != null) {
+			result.append(new TreeSet<>(htmlExtensions));
+		}
+		result.append('\n');
+		result.append(extensionsToFilter).append('\n');
+		result.append(Util.normalize(targetDirectory)).append('\n');
+		result.append(charset.name()).append('\n');
+		result.append(inlineMaxSize).append(',').append(inlineBudget).append(',');
+		if (inlineTypes != null) {
+			result.append(new TreeSet<>(inlineTypes));
+		}
+		result.append('\n');
+		result.append(pruneUnreferenced).append(',').append(entryPoints).append(',').append(keepResources).append('\n');
+		result.append(flattenCssImports).append(',').append(deduplication).append(',');
+		if (preload != null) {
+			result.append(new TreeSet<>(preload));
+		}
+		result.append('\n');
+		result.append(bundleAdjacent).append(',').append(bundles).append(',').append(bundleDirectory).append('\n');
+		if (precompress != null) {
+			result.append(new TreeSet<>(precompress)).append(',').append(precompressThreshold);
+		}
+		result.append('\n');
+		if (importManifests != null) {
+			for (File cur : importManifests) {
+				result.append(Util.normalize(cur)).append(',');
+			}
+		}
+		result.append('\n');
+		return DigestUtils.md5Hex(result.toString());
+	}
+
+	private boolean skipUnchanged(File sourceFile) throws MojoExecutionException {
+		FileIndex.Entry indexed = sourceIndex.get(Util.normalize(sourceFile));
+		String path = getStatePath(sourceFile);
+		if (path == null || indexed == null) {
+			return false;
+		}
+		BuildState.Entry previous = previousState.get(path);
+		if (previous == null || previous.outputHash == null || previous.target == null) {
+			return false;
+		}
+		String hash = hashSource(indexed);
+		if (!hash.equals(previous.getHash())) {
+			return false;
+		}
+		// referenced resource changed. File should be updated with the new
+		// fingerprint
+		for (Entry<String, String> cur : previous.links.entrySet()) {
+			// bundles are created while pages are processed
+			BuildState.Entry bundle = previousState.get(cur.getKey());
+			String resolved = bundle != null && bundle.bundle ? reuseBundle(bundle) : resolveLink(cur.getKey());
+			if (!Objects.equals(cur.getValue(), resolved)) {
+				return false;
+			}
+		}
+		File output = new File(targetDirectory, previous.target);
+		if (!output.isFile()) {
+			return false;
+		}
+		if (getLog().isDebugEnabled()) {
+			getLog().debug("file not changed: " + sourceFile.getAbsolutePath());
+		}
+		outputFingerprints.put(Util.normalize(sourceFile), previous.outputHash);
+		// file might be referenced differently since the previous build
+		File targetFile = getTargetFile(indexed);
+		if (!output.equals(targetFile)) {
+			move(output, targetFile);
+		}
+		BuildState.Entry current = previous.copy();
+		current.setSource(indexed, hash);
+		current.target = relativize(targetPathPrefix, targetFile);
+		currentState.put(current);
+		return true;
+	}
+
+	/**
+	 * @return fingerprinted link of the bundle created by the previous build
+	 *         or null if some of the bundled resources changed
+	 */
+	private String reuseBundle(BuildState.Entry previous) throws MojoExecutionException {
+		String targetPath = sourceToFingerprintedTarget.get(previous.path);
+		if (targetPath != null) {
+			return targetPath;
+		}
+		if (previous.outputHash == null || previous.target == null) {
+			return null;
+		}
+		for (Entry<String, String> cur : previous.links.entrySet()) {
+			if (!Objects.equals(cur.getValue(), resolveLink(cur.getKey()))) {
+				return null;
+			}
+		}
+		if (!new File(targetDirectory, previous.target).isFile()) {
+			return null;
+		}
+		currentState.put(previous.copy());
+		linkFingerprints.put(previous.path, previous.outputHash);
+		targetPath = Util.generateTargetResourceFilename(previous.outputHash, previous.path, namePattern);
+		String existing = sourceToFingerprintedTarget.putIfAbsent(previous.path, targetPath);
+		if (existing != null) {
+			return existing;
+		}
+		return targetPath;
+	}
+
+	// moves file together with its pre-compressed siblings
+	private static void move(File src, File dst) throws MojoExecutionException {
+		try {
+			atomicMove(src, dst);
+			for (Compression cur : Compression.values()) {
+				File sibling = cur.getSibling(src);
+				if (sibling.exists()) {
+					atomicMove(sibling, cur.getSibling(dst));
+				} else {
+					Files.deleteIfExists(cur.getSibling(dst).toPath());
+				}
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to move src: " + src.getAbsolutePath() + " dst: " + dst.getAbsolutePath(), e);
+		}
+	}
+
+	private static void atomicMove(File src, File dst) throws IOException {
+		try {
+			Files.move(src.toPath(), dst.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(src.toPath(), dst.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private void removeStaleOutputs() {
+		Set<String> currentTargets = new HashSet<>();
+		for (BuildState.Entry cur : currentState.getEntries().values()) {
+			if (cur.target != null) {
+				currentTargets.add(cur.target);
+			}
+		}
+		for (BuildState.Entry cur : previousState.getEntries().values()) {
+			if (cur.target == null || currentTargets.contains(cur.target)) {
+				continue;
+			}
+			File stale = new File(targetDirectory, cur.target);
+			if (!stale.isFile()) {
+				continue;
+			}
+			if (getLog().isDebugEnabled()) {
+				getLog().debug("removing stale output: " + stale.getAbsolutePath());
+			}
+			if (!stale.delete()) {
+				getLog().warn("unable to remove stale output: " + stale.getAbsolutePath());
+			}
+			for (Compression curCompression : Compression.values()) {
+				File sibling = curCompression.getSibling(stale);
+				if (sibling.isFile() && !sibling.delete()) {
+					getLog().warn("unable to remove stale output: " + sibling.getAbsolutePath());
+				}
+			}
+		}
+	}
+
+	// build state is kept in memory between executions
+	void startWatching() {
+		watching = true;
+		incremental = true;
+	}
+
+	File getSourceDirectory() {
+		return sourceDirectory;
+	}
+
+	File getTargetDirectory() {
+		return targetDirectory;
+	}
+
+	// every execution starts from scratch except the state kept for the watch
+	// goal
+	private void reset() {
+		updatable = false;
+		scheduledFiles.clear();
+		referencedFiles.clear();
+		processedFiles.clear();
+		sourceToFingerprintedTarget.clear();
+		outputFingerprints.clear();
+		fileReferences.clear();
+		missingLinks.clear();
+		linkFingerprints.clear();
+		importedAssets.clear();
+		importedSources.clear();
+		importedOutputs.clear();
+		bundleLinks.clear();
+		duplicates.clear();
+		stylesheetFonts.clear();
+		prunedFiles.clear();
+		cdnShards = null;
+		archiveEntries.clear();
+		archiveWriter = null;
+		buildMetrics = BuildMetrics.DISABLED;
+		previousState = null;
+		currentState = null;
+	}
+
+	// path of the file in the build state or null if state is not used
+	private String getStatePath(File file) {
+		if (currentState == null) {
+			return null;
+		}
+		return relativize(sourcePathPrefix, file);
+	}
+
+	private static String relativize(String prefix, File file) {
+		String path = Util.normalize(file);
+		if (!path.startsWith(prefix) || path.length() == prefix.length() || path.charAt(prefix.length()) != File.separatorChar) {
+			return null;
+		}
+		return path.substring(prefix.length());
+	}
+
+	private String hashSource(FileIndex.Entry file) throws MojoExecutionException {
+		if (currentState == null) {
+			return hasher.hash(file.file);
+		}
+		BuildState.Entry previous = previousState.get(file.relativePath);
+		String hash;
+		if (previous != null && previous.getHash() != null && previous.isSameFile(file)) {
+			hash = previous.getHash();
+		} else {
+			hash = hasher.hash(file.file);
+		}
+		currentState.getOrCreate(file.relativePath).setSource(file, hash);
+		return hash;
+	}
+
+	private ReferenceGraph buildReferenceGraph(List<File> filesToProcess, ExecutorService executor) throws MojoExecutionException {
+		ReferenceGraph result = new ReferenceGraph(filesToProcess, new FileComparator(htmlExtensions));
+		for (File cur : filesToProcess) {
+			scheduledFiles.add(Util.normalize(cur));
+		}
+		if (executor == null) {
+			for (File cur : filesToProcess) {
+				for (String curReference : findReferences(cur)) {
+					result.addReference(cur, curReference);
+					referencedFiles.add(curReference);
+				}
+			}
+			addDuplicates(result, filesToProcess);
+			return result;
+		}
+		List<Future<Set<String>>> references = new ArrayList<>(filesToProcess.size());
+		for (File cur : filesToProcess) {
+			references.add(executor.submit(() -> findReferences(cur)));
+		}
+		for (int i = 0; i < filesToProcess.size(); i++) {
+			try {
+				for (String curReference : references.get(i).get()) {
+					result.addReference(filesToProcess.get(i), curReference);
+					referencedFiles.add(curReference);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MojoExecutionException("interrupted", e);
+			} catch (ExecutionException e) {
+				throw new MojoExecutionException("unable to read file: " + filesToProcess.get(i).getAbsolutePath(), e.getCause());
+			}
+		}
+		addDuplicates(result, filesToProcess);
+		return result;
+	}
+
+	// canonical resource is processed before the files referencing its
+	// duplicates and is fingerprinted if any of its duplicates is referenced
+	private void addDuplicates(ReferenceGraph graph, List<File> filesToProcess) {
+		for (File cur : filesToProcess) {
+			String canonical = duplicates.get(Util.normalize(cur));
+			if (canonical != null) {
+				graph.addReference(cur, canonical);
+			}
+		}
+		for (Entry<String, String> cur : duplicates.entrySet()) {
+			if (referencedFiles.contains(cur.getKey())) {
+				referencedFiles.add(cur.getValue());
+			}
+		}
+	}
 
-			if (!curFile.isFile()) {
+	/**
+	 * Resources of the same size and extension are hashed. Pages and
+	 * stylesheets are never deduplicated
+	 */
+	private void findDuplicates() throws MojoExecutionException {
+		Map<String, List<FileIndex.Entry>> candidates = new HashMap<>();
+		for (FileIndex.Entry cur : sourceIndex.getFiles()) {
+			if (isHtmlPage(cur.file) || cur.file.getName().endsWith(".css") || importedSources.contains(cur.path) || importedOutputs.contains(cur.path)) {
+				continue;
+			}
+			String extension = Util.getExtension(cur.file.getName());
+			candidates.computeIfAbsent(cur.size + "." + extension, k -> new ArrayList<>()).add(cur);
+		}
+		long saved = 0;
+		for (List<FileIndex.Entry> cur : candidates.values()) {
+			if (cur.size() < 2) {
 				continue;
 			}
+			// files are sorted by path, so the first is canonical
+			Map<String, String> canonical = new HashMap<>();
+			for (FileIndex.Entry curFile : cur) {
+				String existing = canonical.putIfAbsent(hashSource(curFile), curFile.path);
+				if (existing != null) {
+					duplicates.put(curFile.path, existing);
+					saved += curFile.size;
+				}
+			}
+		}
+		if (!duplicates.isEmpty()) {
+			getLog().info("duplicate resources: " + duplicates.size() + " bytes saved: " + saved);
+		}
+	}
+
+	/**
+	 * Should be called once references of all processed files are known
+	 */
+	private void pruneUnreferenced() throws MojoExecutionException {
+		ResourceRules entries = null;
+		ResourceRules keep;
+		try {
+			if (entryPoints != null) {
+				entries = new ResourceRules(entryPoints);
+			}
+			keep = new ResourceRules(keepResources);
+		} catch (IllegalArgumentException e) {
+			throw new MojoExecutionException("invalid resource rule: " + e.getMessage(), e);
+		}
+		List<String> roots = new ArrayList<>();
+		for (FileIndex.Entry cur : sourceIndex.getFiles()) {
+			String link = cur.relativePath.replace(File.separatorChar, '/');
+			boolean entryPoint = entries == null ? isHtmlPage(cur.file) : entries.matches(link);
+			// imported assets are referenced by their links, not by the paths
+			if (entryPoint || keep.matches(link) || link.startsWith("/WEB-INF/") || link.startsWith("/META-INF/") || importedSources.contains(cur.path) || importedOutputs.contains(cur.path)) {
+				roots.add(cur.path);
+			}
+		}
+		Set<String> reachable = Reachability.findReachable(roots, fileReferences, duplicates);
+		List<FileIndex.Entry> pruned = new ArrayList<>();
+		long saved = 0;
+		for (FileIndex.Entry cur : sourceIndex.getFiles()) {
+			if (!reachable.contains(cur.path)) {
+				pruned.add(cur);
+				prunedFiles.add(cur.path);
+				saved += cur.size;
+				if (archiveWriter != null) {
+					archiveWriter.submit(cur.path, Collections.emptyList());
+				}
+			}
+		}
+		getLog().info("unreferenced resources pruned: " + pruned.size() + " bytes saved: " + saved);
+		try {
+			Reachability.saveReport(pruneReport, pruned);
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to save report: " + pruneReport.getAbsolutePath(), e);
+		}
+	}
 
-			String extension = Util.getExtension(curFile.getName());
-			if (extension == null) {
+	private void writeDuplicates() throws MojoExecutionException {
+		if (deduplication != Deduplication.LINK) {
+			return;
+		}
+		for (Entry<String, String> cur : duplicates.entrySet()) {
+			if (prunedFiles.contains(cur.getKey())) {
 				continue;
 			}
+			FileIndex.Entry duplicate = sourceIndex.get(cur.getKey());
+			File source = getCanonicalOutput(sourceIndex.get(cur.getValue()));
+			if (archiveWriter != null) {
+				archiveEntries.addAll(getArchiveEntries(source, duplicate.relativePath));
+				continue;
+			}
+			File target = new File(targetDirectory, duplicate.relativePath);
+			try {
+				for (Compression curCompression : Compression.values()) {
+					File sibling = curCompression.getSibling(target);
+					Files.deleteIfExists(sibling.toPath());
+					if (curCompression.getSibling(source).isFile()) {
+						CopyStrategy.LINK.copy(curCompression.getSibling(source), sibling, duplicate.lastModified);
+					}
+				}
+				Files.deleteIfExists(target.toPath());
+				CopyStrategy.LINK.copy(source, target, duplicate.lastModified);
+			} catch (IOException e) {
+				throw new MojoExecutionException("unable to link src: " + source.getAbsolutePath() + " dst: " + target.getAbsolutePath(), e);
+			}
+		}
+	}
+
+	private File getCanonicalOutput(FileIndex.Entry canonical) throws MojoExecutionException {
+		if (processedFiles.contains(canonical.path)) {
+			return getTargetFile(canonical);
+		}
+		// not copied into the target directory
+		if (archiveWriter != null) {
+			return canonical.file;
+		}
+		String targetPath = sourceToFingerprintedTarget.get(canonical.relativePath.replace(File.separatorChar, '/'));
+		if (targetPath == null) {
+			return new File(targetDirectory, canonical.relativePath);
+		}
+		return new File(targetDirectory, targetPath);
+	}
+
+	private Set<String> findReferences(File sourceFile) throws MojoExecutionException {
+		try (BuildMetrics.Timer timer = buildMetrics.start(Phase.GRAPH)) {
+			return findReferencesInternal(sourceFile);
+		}
+	}
 
-			if (extensionsToFilter.contains(extension)) {
-				output.add(curFile);
+	private Set<String> findReferencesInternal(File sourceFile) throws MojoExecutionException {
+		Set<String> result = new HashSet<>();
+		String path = getStatePath(sourceFile);
+		FileIndex.Entry indexed = sourceIndex.get(Util.normalize(sourceFile));
+		if (path != null && indexed != null) {
+			BuildState.Entry previous = previousState.get(path);
+			if (previous != null && previous.isSameFile(indexed)) {
+				for (String cur : previous.references) {
+					result.add(sourcePathPrefix + cur);
+				}
+				fileReferences.put(Util.normalize(sourceFile), result);
+				return result;
+			}
+		}
+		List<String> links;
+		if (isFlattened(sourceFile)) {
+			String data = readFile(sourceFile);
+			links = LinkRewriter.findLinks(data);
+			// imported stylesheets are processed first
+			for (String cur : cssImportFlattener.findImports(getLink(sourceFile), data)) {
+				result.add(Util.normalize(new File(sourceDirectory, cur)));
+			}
+		} else if (isStreamed(indexed)) {
+			try (Reader r = newReader(sourceFile)) {
+				links = LinkRewriter.findLinks(r);
+			} catch (IOException e) {
+				throw new MojoExecutionException("unable to read file: " + sourceFile.getAbsolutePath(), e);
+			}
+		} else {
+			links = LinkRewriter.findLinks(readFile(sourceFile));
+		}
+		for (String curLink : links) {
+			if (isExcluded(curLink)) {
 				continue;
 			}
+			curLink = stripQuery(curLink);
+			if (curLink.startsWith(PAGE_CONTEXT_PREFIX)) {
+				curLink = curLink.substring(PAGE_CONTEXT_PREFIX.length());
+			}
+			result.add(Util.normalize(new File(sourceDirectory, curLink)));
+		}
+		fileReferences.put(Util.normalize(sourceFile), result);
+		return result;
+	}
+
+	private static String stripQuery(String link) {
+		int queryIndex = link.indexOf('?');
+		if (queryIndex == -1) {
+			queryIndex = link.indexOf('#');
+		}
+		if (queryIndex == -1) {
+			return link;
+		}
+		return link.substring(0, queryIndex);
+	}
+
+	private void process(File sourceFile) throws MojoExecutionException {
+		if (getLog().isDebugEnabled()) {
+			getLog().debug("processing file: " + sourceFile.getAbsolutePath());
+		}
+		long start = buildMetrics.isEnabled() ? System.nanoTime() : 0;
+		FileIndex.Entry indexed = sourceIndex.get(Util.normalize(sourceFile));
+		Map<String, String> links = new LinkedHashMap<>();
+		// output is written into the temporary file and then moved to the
+		// fingerprinted name once the hash is known
+		File tempFile = getTempFile(new File(targetDirectory, Util.stripSourceDirectory(sourceDirectory, sourceFile)));
+		HashingOutputStream streamed = null;
+		if (isStreamed(indexed) && !isMinifiedByCompressor(sourceFile) && !(bundler != null && isHtmlPage(sourceFile)) && !isFlattened(sourceFile) && !isPreloaded(sourceFile)) {
+			try (BuildMetrics.Timer timer = buildMetrics.start(Phase.STREAM)) {
+				streamed = processStreaming(sourceFile, tempFile, links);
+			}
+		}
+		String outputHash;
+		long outputSize;
+		if (streamed != null) {
+			outputHash = streamed.digest();
+			outputSize = streamed.getSize();
+		} else {
+			links.clear();
+			byte[] output = processInMemory(sourceFile, links);
+			try (BuildMetrics.Timer timer = buildMetrics.start(Phase.WRITE); OutputStream os = new FileOutputStream(tempFile)) {
+				os.write(output);
+			} catch (IOException e) {
+				throw new MojoExecutionException("unable to file: " + tempFile.getAbsolutePath(), e);
+			}
+			try (BuildMetrics.Timer timer = buildMetrics.start(Phase.PRECOMPRESS)) {
+				precompress(tempFile, output);
+			}
+			try (BuildMetrics.Timer timer = buildMetrics.start(Phase.HASH)) {
+				outputHash = hasher.hash(output);
+			}
+			outputSize = output.length;
+		}
+		outputFingerprints.put(Util.normalize(sourceFile), outputHash);
+		File targetFile = getTargetFile(indexed);
+		try (BuildMetrics.Timer timer = buildMetrics.start(Phase.WRITE)) {
+			move(tempFile, targetFile);
+		}
+
+		String path = getStatePath(sourceFile);
+		if (indexed != null && buildMetrics.isEnabled()) {
+			buildMetrics.recordFile(indexed.relativePath, "process", indexed.size, outputSize, System.nanoTime() - start);
+		}
+		if (path != null && indexed != null) {
+			// records source attributes and hash
+			hashSource(indexed);
+			BuildState.Entry entry = currentState.getOrCreate(path);
+			entry.outputHash = outputHash;
+			entry.target = relativize(targetPathPrefix, targetFile);
+			entry.links.putAll(links);
+			Set<String> references = fileReferences.get(Util.normalize(sourceFile));
+			if (references != null) {
+				for (String cur : references) {
+					String curPath = relativize(sourcePathPrefix, new File(cur));
+					if (curPath != null) {
+						entry.references.add(curPath);
+					}
+				}
+			}
+		}
+	}
+
+	// each file is processed by a single thread. Permissions are the same as
+	// for the regular output
+	private static File getTempFile(File targetFile) {
+		return new File(targetFile.getParentFile(), "." + targetFile.getName() + ".tmp");
+	}
+
+	/**
+	 * Should be called once the output fingerprint is known
+	 * 
+	 * @return fingerprinted file if it is referenced, otherwise the original
+	 *         name
+	 */
+	private File getTargetFile(FileIndex.Entry sourceFile) throws MojoExecutionException {
+		if (referencedFiles.contains(sourceFile.path)) {
+			String targetPath = resolveLink(sourceFile.relativePath.replace(File.separatorChar, '/'));
+			if (targetPath != null) {
+				return new File(targetDirectory, targetPath);
+			}
+		}
+		return new File(targetDirectory, sourceFile.relativePath);
+	}
+
+	private byte[] processInMemory(File sourceFile, Map<String, String> links) throws MojoExecutionException {
+		String data = readFile(sourceFile);
+		if (bundler != null && isHtmlPage(sourceFile)) {
+			try (BuildMetrics.Timer timer = buildMetrics.start(Phase.BUNDLE)) {
+				data = bundler.apply(data);
+			}
+		}
+		if (isFlattened(sourceFile)) {
+			CssImportFlattener.Flattened flattened;
+			try (BuildMetrics.Timer timer = buildMetrics.start(Phase.FLATTEN)) {
+				flattened = cssImportFlattener.flatten(getLink(sourceFile), data);
+			}
+			data = flattened.data;
+			// output depends on the imported stylesheets
+			for (String cur : flattened.imports) {
+				links.put(cur, resolveLink(cur));
+			}
+		}
+		String outputFileData;
+		// rewritten links of the page to the resource paths
+		Map<String, String> pageLinks = isPreloaded(sourceFile) ? new LinkedHashMap<>() : null;
+		try (BuildMetrics.Timer timer = buildMetrics.start(Phase.REWRITE)) {
+			LinkRewriter.LinkHandler handler = newLinkHandler(sourceFile, links);
+			if (pageLinks != null) {
+				handler = collectLinks(handler, links, pageLinks);
+			}
+			outputFileData = LinkRewriter.rewrite(data, handler);
+			if (outputFileData == null) {
+				// links of different kinds overlap. Rewrite them one kind after
+				// another
+				outputFileData = LinkRewriter.rewriteSequentially(data, handler);
+			}
+			if (pageLinks != null) {
+				outputFileData = PreloadHints.inject(outputFileData, getPreloadHints(outputFileData, pageLinks));
+			}
+		}
+		String processedData = null;
+		if (isHtml(sourceFile)) {
+			getLog().info("minifying html: " + sourceFile.getAbsolutePath());
+			try (BuildMetrics.Timer timer = buildMetrics.start(Phase.MINIFY_HTML)) {
+				processedData = HtmlMinifier.minify(outputFileData);
+			}
+		} else if (sourceFile.getName().contains(".min.")) {
+			getLog().info("ignoring already minified resource: " + sourceFile.getAbsolutePath());
+		} else if (sourceFile.getName().endsWith(".js") && minifyJs) {
+			processedData = outputFileData;
+			getLog().info("minifying javascript: " + sourceFile.getAbsolutePath());
+			processedData = minify(Phase.MINIFY_JS, Compressor.JAVASCRIPT_OPTIONS, processedData, this::compressJavaScript);
+		} else if (sourceFile.getName().endsWith(".css") && minifyCss) {
+			processedData = outputFileData;
+			getLog().info("minifying css: " + sourceFile.getAbsolutePath());
+			processedData = minify(Phase.MINIFY_CSS, Compressor.CSS_OPTIONS, processedData, this::compressCSS);
+		}
+
+		if (processedData == null) {
+			processedData = outputFileData;
+		}
+		return processedData.getBytes(charset);
+	}
+
+	/**
+	 * Rewrites, minifies html, hashes and pre-compresses the file in a single
+	 * pass
+	 * 
+	 * @return closed output or null if links of different kinds overlap and
+	 *         file should be processed in memory
+	 */
+	private HashingOutputStream processStreaming(File sourceFile, File tempFile, Map<String, String> links) throws MojoExecutionException {
+		String sourceOfData = sourceFile.getAbsolutePath();
+		boolean html = isHtml(sourceFile);
+		if (html) {
+			getLog().info("minifying html: " + sourceOfData);
+		} else if (sourceFile.getName().contains(".min.")) {
+			getLog().info("ignoring already minified resource: " + sourceOfData);
+		}
+		HashingOutputStream result;
+		try (Reader in = LinkRewriter.rewrite(newReader(sourceFile), newLinkHandler(sourceFile, links))) {
+			result = new HashingOutputStream(newOutputStream(tempFile), hasher.newHasher());
+			try (Writer out = new BufferedWriter(new OutputStreamWriter(result, charset))) {
+				if (html) {
+					HtmlMinifier.minify(in, out);
+				} else {
+					IOUtils.copy(in, out);
+				}
+			}
+		} catch (LinkRewriter.OverlappingLinksException e) {
+			return null;
+		} catch (IOException e) {
+			if (e.getCause() instanceof MojoExecutionException) {
+				throw (MojoExecutionException) e.getCause();
+			}
+			throw new MojoExecutionException("unable to process file: " + sourceOfData, e);
+		}
+		if (precompress != null) {
+			for (Compression cur : precompress) {
+				File sibling = cur.getSibling(tempFile);
+				if (result.getSize() < precompressThreshold || sibling.length() >= result.getSize()) {
+					try {
+						Files.deleteIfExists(sibling.toPath());
+					} catch (IOException e) {
+						throw new MojoExecutionException("unable to delete: " + sibling.getAbsolutePath(), e);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	// target file and its pre-compressed siblings
+	private OutputStream newOutputStream(File targetFile) throws IOException {
+		OutputStream result = new FileOutputStream(targetFile);
+		if (precompress == null) {
+			return result;
+		}
+		try {
+			for (Compression cur : precompress) {
+				result = new TeeOutputStream(result, cur.newOutputStream(new BufferedOutputStream(new FileOutputStream(cur.getSibling(targetFile)))));
+			}
+		} catch (IOException e) {
+			result.close();
+			throw e;
+		}
+		return result;
+	}
+
+	private boolean isStreamed(FileIndex.Entry file) {
+		return streamingThreshold >= 0 && file != null && file.size > streamingThreshold;
+	}
+
+	private boolean isHtml(File file) {
+		return isHtmlPage(file) && minifyHtml;
+	}
+
+	private boolean isPreloadEnabled() {
+		return preload != null && !preload.isEmpty();
+	}
+
+	private boolean isPreloaded(File file) {
+		return isPreloadEnabled() && isHtmlPage(file);
+	}
+
+	/**
+	 * @param links  resolved links of the page
+	 * @param result rewritten links of the resolved resources
+	 */
+	private static LinkRewriter.LinkHandler collectLinks(LinkRewriter.LinkHandler handler, Map<String, String> links, Map<String, String> result) {
+		return (curLink, pattern) -> {
+			String rewritten = handler.rewrite(curLink, pattern);
+			String path = getBundledPath(curLink);
+			if (links.get(path) != null) {
+				result.putIfAbsent(rewritten, path);
+			}
+			return rewritten;
+		};
+	}
+
+	/**
+	 * @param pageLinks rewritten links of the page to the resource paths in
+	 *                  the order of appearance
+	 */
+	private List<PreloadHints.Hint> getPreloadHints(String page, Map<String, String> pageLinks) throws MojoExecutionException {
+		Set<String> modules = PreloadHints.findModules(page);
+		Set<String> seen = PreloadHints.findPreloaded(page);
+		List<PreloadHints.Hint> result = new ArrayList<>();
+		for (Entry<String, String> cur : pageLinks.entrySet()) {
+			PreloadType type = PreloadType.fromPath(cur.getValue());
+			if (type == null) {
+				continue;
+			}
+			if (preload.contains(type) && seen.add(cur.getKey())) {
+				result.add(new PreloadHints.Hint(cur.getKey(), type, type == PreloadType.SCRIPT && modules.contains(cur.getKey())));
+			}
+			if (type == PreloadType.STYLE && preload.contains(PreloadType.FONT)) {
+				for (String curFont : getFonts(cur.getValue())) {
+					if (seen.add(curFont)) {
+						result.add(new PreloadHints.Hint(curFont, PreloadType.FONT, false));
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	// stylesheets are processed before the pages referencing them
+	private List<String> getFonts(String link) throws MojoExecutionException {
+		List<String> result = stylesheetFonts.get(link);
+		if (result != null) {
+			return result;
+		}
+		String targetPath = resolveLink(link);
+		if (targetPath == null) {
+			return Collections.emptyList();
+		}
+		File stylesheet;
+		ImportedAsset imported = importedAssets.get(link);
+		if (imported != null) {
+			stylesheet = imported.upstreamOutput != null ? imported.upstreamOutput : new File(sourceDirectory, imported.asset.path);
+		} else if (sourceIndex.get(Util.normalize(new File(sourceDirectory, link))) == null) {
+			// bundle
+			stylesheet = new File(targetDirectory, targetPath);
+		} else {
+			stylesheet = getOutput(link, targetPath);
+		}
+		result = stylesheet.isFile() ? PreloadHints.findFonts(link, readFile(stylesheet)) : Collections.emptyList();
+		List<String> existing = stylesheetFonts.putIfAbsent(link, result);
+		if (existing != null) {
+			return existing;
+		}
+		return result;
+	}
+
+	private boolean isFlattened(File file) {
+		return cssImportFlattener != null && file.getName().endsWith(".css");
+	}
+
+	// absolute link to the file in the source directory
+	private String getLink(File sourceFile) {
+		return Util.stripSourceDirectory(sourceDirectory, sourceFile).replace(File.separatorChar, '/');
+	}
+
+	private boolean isHtmlPage(File file) {
+		String extension = Util.getExtension(file.getName());
+		return htmlExtensions != null && !htmlExtensions.isEmpty() && extension != null && htmlExtensions.contains(extension);
+	}
+
+	/**
+	 * @return link to the bundle or null if resources can't be bundled
+	 */
+	private String bundle(Bundler.Type type, String name, List<String> links) throws MojoExecutionException {
+		List<String> paths = new ArrayList<>(links.size());
+		for (String cur : links) {
+			paths.add(getBundledPath(cur));
+		}
+		String key = type + "\n" + name + "\n" + paths;
+		CompletableFuture<String> result = bundleLinks.get(key);
+		if (result == null) {
+			CompletableFuture<String> created = new CompletableFuture<>();
+			result = bundleLinks.putIfAbsent(key, created);
+			if (result == null) {
+				result = created;
+				try {
+					created.complete(buildBundle(type, name, paths, key));
+				} catch (MojoExecutionException e) {
+					created.completeExceptionally(e);
+					throw e;
+				}
+			}
+		}
+		String link;
+		try {
+			link = result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("interrupted", e);
+		} catch (ExecutionException e) {
+			throw new MojoExecutionException("unable to create bundle: " + paths, e.getCause());
+		}
+		if (link == null) {
+			return null;
+		}
+		if (links.get(0).startsWith(PAGE_CONTEXT_PREFIX)) {
+			return PAGE_CONTEXT_PREFIX + link;
+		}
+		return link;
+	}
+
+	private String buildBundle(Bundler.Type type, String name, List<String> paths, String key) throws MojoExecutionException {
+		String link = name;
+		if (link == null) {
+			link = bundleDirectory + "/bundle-" + DigestUtils.md5Hex(key).substring(0, 8) + type.getExtension();
+		}
+		if (sourceIndex.get(Util.normalize(new File(sourceDirectory, link))) != null) {
+			throw new MojoExecutionException("bundle conflicts with the existing resource: " + link);
+		}
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < paths.size(); i++) {
+			String cur = paths.get(i);
+			// processed resources are already rewritten and minified
+			String data = readFile(getOutput(cur, resolveLink(cur)));
+			if (type == Bundler.Type.STYLESHEET) {
+				// @import is allowed only at the beginning of the stylesheet
+				if (CssImportFlattener.hasImports(data)) {
+					getLog().info("stylesheet with @import is not bundled: " + cur);
+					return null;
+				}
+				if (i > 0) {
+					data = CssImportFlattener.removeCharset(data);
+				}
+				// relative urls are resolved against the bundle
+				data = CssImportFlattener.rebase(cur, data);
+			}
+			if (i > 0) {
+				content.append(type.getSeparator());
+			}
+			content.append(data);
+		}
+		byte[] output = content.toString().getBytes(charset);
+		String hash = hasher.hash(output);
+		String targetPath = Util.generateTargetResourceFilename(hash, link, namePattern);
+		File targetFile = new File(targetDirectory, targetPath);
+		File parent = targetFile.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			throw new MojoExecutionException("unable to create directory: " + parent.getAbsolutePath());
+		}
+		File tempFile = getTempFile(targetFile);
+		try {
+			Files.write(tempFile.toPath(), output);
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to write: " + tempFile.getAbsolutePath(), e);
+		}
+		precompress(tempFile, output);
+		move(tempFile, targetFile);
+		linkFingerprints.put(link, hash);
+		sourceToFingerprintedTarget.put(link, targetPath);
+		if (currentState != null) {
+			// keeps the bundle from removal and lets unchanged pages be skipped
+			BuildState.Entry entry = new BuildState.Entry(link);
+			entry.bundle = true;
+			entry.outputHash = hash;
+			entry.target = relativize(targetPathPrefix, targetFile);
+			for (String cur : paths) {
+				entry.links.put(cur, resolveLink(cur));
+			}
+			currentState.put(entry);
+		}
+		getLog().info("bundle created: " + targetPath + " from: " + paths);
+		return link;
+	}
+
+	// path of the bundled resource relative to the source directory
+	private static String getBundledPath(String link) {
+		String result = stripQuery(link);
+		if (result.startsWith(PAGE_CONTEXT_PREFIX)) {
+			result = result.substring(PAGE_CONTEXT_PREFIX.length());
+		}
+		return result;
+	}
+
+	// yuicompressor needs the whole file
+	private boolean isMinifiedByCompressor(File file) {
+		if (isHtml(file) || file.getName().contains(".min.")) {
+			return false;
+		}
+		return (file.getName().endsWith(".js") && minifyJs) || (file.getName().endsWith(".css") && minifyCss);
+	}
+
+	private String compressJavaScript(String data, Log log) {
+		if (minificationClient != null) {
+			return minificationClient.compressJavaScript(data, log);
+		}
+		return Compressor.compressJavaScript(new StringReader(data), log);
+	}
+
+	private String compressCSS(String data, Log log) {
+		if (minificationClient != null) {
+			return minificationClient.compressCSS(data, log);
+		}
+		return Compressor.compressCSS(new StringReader(data), log);
+	}
+
+	private String minify(Phase phase, String options, String data, MinificationCache.Minifier minifier) {
+		try (BuildMetrics.Timer timer = buildMetrics.start(phase)) {
+			if (minificationCache == null) {
+				return minifier.minify(data, getLog());
+			}
+			return minificationCache.minify(options, data, getLog(), minifier);
+		}
+	}
+
+	private void precompress(File targetFile, byte[] output) throws MojoExecutionException {
+		if (precompress == null) {
+			return;
+		}
+		for (Compression cur : precompress) {
+			File sibling = cur.getSibling(targetFile);
+			byte[] compressed = null;
+			if (output.length >= precompressThreshold) {
+				compressed = cur.compress(output);
+			}
+			try {
+				if (compressed == null || compressed.length >= output.length) {
+					// sibling of the previous build
+					Files.deleteIfExists(sibling.toPath());
+					continue;
+				}
+				Files.write(sibling.toPath(), compressed);
+			} catch (IOException e) {
+				throw new MojoExecutionException("unable to write: " + sibling.getAbsolutePath(), e);
+			}
+		}
+	}
+
+	/**
+	 * @param links resolved links are added here
+	 */
+	private LinkRewriter.LinkHandler newLinkHandler(File sourceFile, Map<String, String> links) {
+		String sourceOfData = sourceFile.getAbsolutePath();
+		if (inliner == null || !sourceFile.getName().endsWith(".css")) {
+			return (curLink, pattern) -> rewriteLink(curLink, sourceOfData, links);
+		}
+		DataUriInliner.Budget budget = inliner.newBudget();
+		return (curLink, pattern) -> {
+			if (pattern == LinkRewriter.CSS_URL_PATTERN) {
+				String dataUri = inline(curLink, links, budget);
+				if (dataUri != null) {
+					return dataUri;
+				}
+			}
+			return rewriteLink(curLink, sourceOfData, links);
+		};
+	}
+
+	/**
+	 * @return data uri or null if resource should not be inlined
+	 */
+	private String inline(String link, Map<String, String> links, DataUriInliner.Budget budget) throws MojoExecutionException {
+		// fragments are meaningful for svg
+		if (isExcluded(link) || link.indexOf('?') != -1 || link.indexOf('#') != -1) {
+			return null;
+		}
+		String mimeType = inliner.getMimeType(link);
+		if (mimeType == null || sourceIndex.get(Util.normalize(new File(sourceDirectory, link))) == null) {
+			return null;
+		}
+		// inlined resource is still a dependency in the incremental build
+		String targetPath = resolveLink(link);
+		if (targetPath == null) {
+			return null;
+		}
+		File file = getOutput(link, targetPath);
+		String result;
+		try {
+			result = inliner.getDataUri(file, mimeType);
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to read: " + file.getAbsolutePath(), e);
+		}
+		if (result == null || !budget.take(result)) {
+			return null;
+		}
+		links.put(link, targetPath);
+		return result;
+	}
+
+	/**
+	 * @param targetPath resolved link
+	 * @return processed output of the resource if it was processed, otherwise
+	 *         source file
+	 */
+	private File getOutput(String link, String targetPath) {
+		File source = new File(sourceDirectory, link);
+		String canonical = duplicates.get(Util.normalize(source));
+		if (canonical != null) {
+			source = new File(canonical);
+		}
+		if (processedFiles.contains(Util.normalize(source))) {
+			return new File(targetDirectory, targetPath);
+		}
+		return source;
+	}
+
+	private String rewriteLink(String link, String sourceOfData, Map<String, String> links) throws MojoExecutionException {
+		if (getLog().isDebugEnabled()) {
+			getLog().debug("link: " + link);
+		}
+		String curLink = link;
+		if (isExcluded(curLink)) {
+			getLog().info("resource excluded: " + curLink);
+			return curLink;
+		}
+		int queryIndex = curLink.indexOf('?');
+		String query = "";
+		if (queryIndex != -1) {
+			query = curLink.substring(queryIndex);
+			curLink = curLink.substring(0, queryIndex);
+		} else {
+			queryIndex = curLink.indexOf('#');
+			if (queryIndex != -1) {
+				query = curLink.substring(queryIndex);
+				curLink = curLink.substring(0, queryIndex);
+			}
+		}
+		String prefix = "";
+		if (curLink.startsWith(PAGE_CONTEXT_PREFIX)) {
+			prefix = PAGE_CONTEXT_PREFIX;
+			curLink = curLink.substring(PAGE_CONTEXT_PREFIX.length());
+		}
+
+		String targetPath = resolveLink(curLink);
+		links.put(curLink, targetPath);
+		if (targetPath == null) {
+			getLog().warn("resource file doesn't exist: " + curLink + " found in: " + sourceOfData);
+			return prefix + curLink;
+		}
+
+		if (cdnShards == null) {
+			return prefix + targetPath + query;
+		}
+		String fingerprint = linkFingerprints.get(curLink);
+		return cdnShards.getHost(curLink, fingerprint != null ? fingerprint : targetPath) + prefix + targetPath + query;
+	}
+
+	/**
+	 * @return fingerprinted link or null if resource doesn't exist
+	 */
+	private String resolveLink(String curLink) throws MojoExecutionException {
+		String targetPath = sourceToFingerprintedTarget.get(curLink);
+		if (targetPath != null) {
+			buildMetrics.linkHit();
+			return targetPath;
+		}
+		if (missingLinks.contains(curLink)) {
+			buildMetrics.linkMissing();
+			return null;
+		}
+		try (BuildMetrics.Timer timer = buildMetrics.start(Phase.HASH)) {
+			targetPath = fingerprintLink(curLink);
+		}
+		if (targetPath == null) {
+			buildMetrics.linkMissing();
+			return null;
+		}
+		buildMetrics.linkMiss();
+		logIfRelativePath(curLink);
+		logIfRelativePath(targetPath);
+
+		String existing = sourceToFingerprintedTarget.putIfAbsent(curLink, targetPath);
+		if (existing != null) {
+			return existing;
+		}
+		return targetPath;
+	}
+
+	/**
+	 * @return fingerprinted link or null if resource doesn't exist
+	 */
+	private String fingerprintLink(String curLink) throws MojoExecutionException {
+		ImportedAsset imported = importedAssets.get(curLink);
+		if (imported != null) {
+			if (imported.asset.hash != null) {
+				linkFingerprints.put(curLink, imported.asset.hash);
+			}
+			return imported.asset.path;
+		}
+		File sourceFile = new File(sourceDirectory, curLink);
+		String sourcePath = Util.normalize(sourceFile);
+		String canonical = duplicates.get(sourcePath);
+		if (canonical != null) {
+			String canonicalLink = sourceIndex.get(canonical).relativePath.replace(File.separatorChar, '/');
+			String result = resolveLink(canonicalLink);
+			linkFingerprints.put(curLink, linkFingerprints.get(canonicalLink));
+			return result;
+		}
+		String fingerprint = null;
+		// processed file is fingerprinted using its output. Output is
+		// available only when the file was processed, otherwise it is
+		// referenced from the same reference cycle and source file is used
+		if (scheduledFiles.contains(sourcePath)) {
+			fingerprint = outputFingerprints.get(sourcePath);
+		}
+		if (fingerprint == null) {
+			FileIndex.Entry indexed = sourceIndex.get(sourcePath);
+			if (indexed != null) {
+				fingerprint = hashSource(indexed);
+			} else if (relativize(sourcePathPrefix, sourceFile) == null && sourceFile.isFile()) {
+				// link points outside of the source directory
+				fingerprint = hasher.hash(sourceFile);
+			} else {
+				// resource might exist only in the target directory
+				File targetFile = new File(targetDirectory, curLink);
+				if (!targetFile.isFile()) {
+					missingLinks.add(curLink);
+					return null;
+				}
+				fingerprint = hasher.hash(targetFile);
+			}
+		}
+		linkFingerprints.put(curLink, fingerprint);
+		return Util.generateTargetResourceFilename(fingerprint, curLink, namePattern);
+	}
+
+	private void logIfRelativePath(String path) {
+		if (path.length() != 0 && path.charAt(0) != '/') {
+			getLog().warn("relative path detected: " + path);
+		}
+	}
+
+	private boolean isExcluded(String path) {
+		return resourceMatcher.isExcluded(path);
+	}
+
+	private void mkdirs() {
+		// parent directories come first
+		for (String cur : sourceIndex.getDirectories()) {
+			File newDir = new File(targetDirectory, cur);
+			if (!newDir.mkdir() && !newDir.isDirectory()) {
+				getLog().warn("unable to create directory in outputDirectory: " + newDir);
+			}
+		}
+	}
+
+	private void deepCopyRemainingFiles(List<FileIndex.Entry> files, ExecutorService executor) throws MojoExecutionException {
+		// referenced resources are copied straight to the fingerprinted
+		// names
+		Map<String, Set<String>> fingerprinted = new HashMap<>();
+		for (Entry<String, String> cur : sourceToFingerprintedTarget.entrySet()) {
+			if (isCopied(cur.getKey()) && !duplicates.containsKey(Util.normalize(new File(sourceDirectory, cur.getKey())))) {
+				fingerprinted.computeIfAbsent(Util.normalize(new File(sourceDirectory, cur.getKey())), k -> new TreeSet<>()).add(cur.getValue());
+			}
+		}
+		List<FileIndex.Entry> toCopy = new ArrayList<>();
+		for (FileIndex.Entry curFile : files) {
+			if (!processedFiles.contains(curFile.path) && !importedSources.contains(curFile.path) && !duplicates.containsKey(curFile.path) && !prunedFiles.contains(curFile.path)) {
+				toCopy.add(curFile);
+			}
+		}
+		// fingerprinted resources from the target directories of the
+		// imported manifests
+		List<ImportedAsset> toImport = new ArrayList<>();
+		for (Entry<String, ImportedAsset> cur : importedAssets.entrySet()) {
+			ImportedAsset asset = cur.getValue();
+			if (asset.upstreamOutput != null && (asset.sourceFound || sourceToFingerprintedTarget.containsKey(cur.getKey()))) {
+				toImport.add(asset);
+			}
+		}
+		if (executor == null) {
+			for (FileIndex.Entry curFile : toCopy) {
+				copy(curFile, fingerprinted.get(curFile.path));
+			}
+			for (ImportedAsset cur : toImport) {
+				copyImported(cur);
+			}
+			return;
+		}
+		List<Future<Void>> copies = new ArrayList<>(toCopy.size() + toImport.size());
+		for (FileIndex.Entry curFile : toCopy) {
+			copies.add(executor.submit(() -> {
+				copy(curFile, fingerprinted.get(curFile.path));
+				return null;
+			}));
+		}
+		for (ImportedAsset cur : toImport) {
+			copies.add(executor.submit(() -> {
+				copyImported(cur);
+				return null;
+			}));
+		}
+		for (Future<Void> cur : copies) {
+			try {
+				cur.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MojoExecutionException("interrupted", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof MojoExecutionException) {
+					throw (MojoExecutionException) e.getCause();
+				}
+				throw new MojoExecutionException("unable to copy", e.getCause());
+			}
+		}
+	}
+
+	// link points to the resource which is not processed and copied from the
+	// source directory
+	private boolean isCopied(String link) {
+		String path = Util.normalize(new File(sourceDirectory, link));
+		return !processedFiles.contains(path) && !importedAssets.containsKey(link) && sourceIndex.get(path) != null;
+	}
+
+	private void copy(FileIndex.Entry sourceFile, Set<String> fingerprinted) throws MojoExecutionException {
+		if (!buildMetrics.isEnabled()) {
+			copyInternal(sourceFile, fingerprinted);
+			return;
+		}
+		long start = System.nanoTime();
+		try (BuildMetrics.Timer timer = buildMetrics.start(Phase.COPY)) {
+			copyInternal(sourceFile, fingerprinted);
+		}
+		buildMetrics.recordFile(sourceFile.relativePath, "copy", sourceFile.size, sourceFile.size, System.nanoTime() - start);
+	}
+
+	private void copyInternal(FileIndex.Entry sourceFile, Set<String> fingerprinted) throws MojoExecutionException {
+		List<File> targets = new ArrayList<>();
+		if (fingerprinted == null) {
+			targets.add(new File(targetDirectory, sourceFile.relativePath));
+		} else {
+			for (String cur : fingerprinted) {
+				targets.add(new File(targetDirectory, cur));
+			}
+		}
+		if (archiveWriter != null) {
+			List<ArchiveWriter.Entry> entries = new ArrayList<>(targets.size());
+			for (File cur : targets) {
+				entries.add(new ArchiveWriter.Entry(getArchiveName(relativize(targetPathPrefix, cur)), sourceFile.file));
+			}
+			archiveWriter.submit(sourceFile.path, entries);
+			return;
+		}
+		for (File cur : targets) {
+			try {
+				if (isSameFile(sourceFile, cur)) {
+					if (getLog().isDebugEnabled()) {
+						getLog().debug("file not changed: " + sourceFile.file.getAbsolutePath());
+					}
+					continue;
+				}
+				Files.deleteIfExists(cur.toPath());
+				copyStrategy.copy(sourceFile.file, cur, sourceFile.lastModified);
+			} catch (IOException e) {
+				throw new MojoExecutionException("unable to copy src: " + sourceFile.file.getAbsolutePath() + " dst: " + cur.getAbsolutePath(), e);
+			}
+		}
+		if (currentState != null) {
+			BuildState.Entry entry = currentState.getOrCreate(sourceFile.relativePath);
+			entry.target = relativize(targetPathPrefix, targets.get(0));
+			BuildState.Entry previous = previousState.get(sourceFile.relativePath);
+			if (entry.getHash() == null && previous != null && previous.isSameFile(sourceFile)) {
+				entry.setSource(sourceFile, previous.getHash());
+			}
+		}
+	}
+
+	// copies fingerprinted resource together with its pre-compressed siblings
+	private void copyImported(ImportedAsset imported) throws MojoExecutionException {
+		if (archiveWriter != null) {
+			archiveEntries.addAll(getArchiveEntries(imported.upstreamOutput, imported.asset.path));
+			return;
+		}
+		File target = new File(targetDirectory, imported.asset.path);
+		try (BuildMetrics.Timer timer = buildMetrics.start(Phase.COPY)) {
+			for (Compression cur : Compression.values()) {
+				File sibling = cur.getSibling(imported.upstreamOutput);
+				if (sibling.isFile()) {
+					copyFile(sibling, cur.getSibling(target));
+				} else {
+					Files.deleteIfExists(cur.getSibling(target).toPath());
+				}
+			}
+			copyFile(imported.upstreamOutput, target);
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to copy src: " + imported.upstreamOutput.getAbsolutePath() + " dst: " + target.getAbsolutePath(), e);
+		}
+	}
+
+	private void copyFile(File source, File target) throws IOException {
+		BasicFileAttributes attrs = Files.readAttributes(source.toPath(), BasicFileAttributes.class);
+		FileIndex.Entry entry = new FileIndex.Entry(source, Util.normalize(source), source.getName(), attrs.size(), attrs.lastModifiedTime().toMillis());
+		if (isSameFile(entry, target)) {
+			return;
+		}
+		File parent = target.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("unable to create directory: " + parent.getAbsolutePath());
+		}
+		Files.deleteIfExists(target.toPath());
+		copyStrategy.copy(source, target, entry.lastModified);
+	}
+
+	private static boolean isSameFile(FileIndex.Entry sourceFile, File target) throws IOException {
+		BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(target.toPath(), BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+		return attrs.isRegularFile() && attrs.size() == sourceFile.size && attrs.lastModifiedTime().toMillis() == sourceFile.lastModified;
+	}
+
+	private String readFile(File file) throws MojoExecutionException {
+		try (Reader r = newReader(file)) {
+			return IOUtils.toString(r);
+		} catch (Exception e) {
+			throw new MojoExecutionException("unable to read file: " + file.getAbsolutePath(), e);
+		}
+	}
+
+	// malformed input is replaced the same way as in FileReader
+	private Reader newReader(File file) throws IOException {
+		CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		return new BufferedReader(Channels.newReader(FileChannel.open(file.toPath(), StandardOpenOption.READ), decoder, -1));
+	}
+
+	private List<File> findFilesToProcess() {
+		List<File> result = new ArrayList<>();
+		for (FileIndex.Entry curFile : sourceIndex.getFiles()) {
+			if (isFiltered(curFile)) {
+				result.add(curFile.file);
+			}
+		}
+		return result;
+	}
+
+	private boolean isFiltered(FileIndex.Entry file) {
+		String extension = Util.getExtension(file.file.getName());
+		return extension != null && extensionsToFilter.contains(extension) && !importedSources.contains(file.path) && !importedOutputs.contains(file.path);
+	}
+
+	private class BundleHandler implements Bundler.BundleHandler {
+
+		@Override
+		public String bundle(Bundler.Type type, String name, List<String> links) throws MojoExecutionException {
+			return FingerprintMojo.this.bundle(type, name, links);
+		}
+
+		@Override
+		public boolean isLocal(String link) {
+			if (isExcluded(link)) {
+				return false;
+			}
+			String path = getBundledPath(link);
+			if (!path.startsWith("/") || path.startsWith("//") || importedAssets.containsKey(path)) {
+				return false;
+			}
+			return sourceIndex.get(Util.normalize(new File(sourceDirectory, path))) != null;
+		}
+
+		@Override
+		public String getPath(String link) {
+			return getBundledPath(link);
+		}
+	}
+
+	private class ImportHandler implements CssImportFlattener.ImportHandler {
+
+		@Override
+		public String read(String path) throws MojoExecutionException {
+			File file = new File(sourceDirectory, path);
+			if (importedAssets.containsKey(path) || sourceIndex.get(Util.normalize(file)) == null) {
+				return null;
+			}
+			return readFile(file);
+		}
+
+		@Override
+		public boolean isLocal(String link) {
+			return !isExcluded(link) && !link.startsWith("//") && link.indexOf(':') == -1;
+		}
+	}
+
+	private static class ImportedAsset {
+
+		private final AssetManifest.Asset asset;
+		// fingerprinted file in the target directory of the manifest. Null if
+		// it is in the source directory
+		private final File upstreamOutput;
+		private final boolean sourceFound;
+		// hash of the upstream source by the configured algorithm. Null if
+		// unknown
+		private final String sourceHash;
+
+		ImportedAsset(AssetManifest.Asset asset, File upstreamOutput, boolean sourceFound, String sourceHash) {
+			this.asset = asset;
+			this.upstreamOutput = upstreamOutput;
+			this.sourceFound = sourceFound;
+			this.sourceHash = sourceHash;
 		}
 	}
 
@@ -0,0 +1,41 @@
+package com.st.maven.fingerprint;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.st.maven.fingerprint.DigestAlgorithm.Hasher;
+
+/**
+ * Calculates hash and size of the data while writing it
+ */
+class HashingOutputStream extends FilterOutputStream {
+
+	private final Hasher hasher;
+	private long size;
+
+	HashingOutputStream(OutputStream out, Hasher hasher) {
+		super(out);
+		this.hasher = hasher;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		hasher.update(b, off, len);
+		size += len;
+	}
+
+	long getSize() {
+		return size;
+	}
+
+	String digest() {
+		return hasher.digest();
+	}
+}
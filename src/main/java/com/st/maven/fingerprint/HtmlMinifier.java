@@ -1,66 +1,239 @@
 package com.st.maven.fingerprint;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 
+/**
+ * Removes new lines, tabs and whitespaces between tags in a single pass.
+ * Text around &lt;pre&gt; blocks is trimmed. Contents of &lt;pre&gt;,
+ * &lt;textarea&gt;, &lt;script&gt; and &lt;style&gt; are preserved.
+ * type="text" is removed from &lt;input&gt; since it's default type.
+ */
 class HtmlMinifier {
 
-	private static final Pattern NEW_LINE_SYMBOLS = Pattern.compile("[\n\t\r]");
-	private static final Pattern TAG_WHITESPACES = Pattern.compile(">(\\s+)<");
 	private static final String PRE_START_TAG = "<pre";
 	private static final String PRE_END_TAG = "</pre>";
-	private static final Pattern DEFAULT_INPUT_TYPE = Pattern.compile("(<input.*?) type=\"text\"");
+	private static final String INPUT_TAG = "<input";
+	private static final String DEFAULT_INPUT_TYPE = " type=\"text\"";
+	private static final String[] RAW_TEXT_TAGS = { "<script", "<style", "<textarea" };
+	private static final int BUFFER_SIZE = 8192;
+
+	private enum Mode {
+		NORMAL, PRE, RAW_TEXT
+	}
+
+	private final Reader in;
+	private final Writer out;
+	private final char[] input = new char[BUFFER_SIZE];
+	private int inputPosition;
+	private int inputLimit;
+	private boolean eof;
+	private final char[] output = new char[BUFFER_SIZE];
+	private int outputPosition;
+
+	private Mode mode = Mode.NORMAL;
+	// <input found on the current line. Next type="text" on this line will be
+	// removed
+	private boolean inputTagFound;
+	// end tag of the raw text element which is being started
+	private String rawTextEnd;
+	private boolean rawTextStarted;
+	// whitespaces which might be removed
+	private final StringBuilder pending = new StringBuilder();
+	private boolean segmentStarted;
+	private int lastWritten = -1;
+
+	private HtmlMinifier(Reader in, Writer out) {
+		this.in = in;
+		this.out = out;
+	}
 
 	static String minify(String page) {
-		Matcher m = DEFAULT_INPUT_TYPE.matcher(page);
+		StringWriter result = new StringWriter(page.length());
+		try {
+			minify(new StringReader(page), result);
+		} catch (IOException e) {
+			// in-memory streams don't throw
+			throw new IllegalStateException(e);
+		}
+		return result.toString();
+	}
+
+	static void minify(Reader in, Writer out) throws IOException {
+		new HtmlMinifier(in, out).run();
+	}
+
+	private void run() throws IOException {
+		int c;
+		while ((c = peek(0)) != -1) {
+			if (isLineTerminator(c)) {
+				inputTagFound = false;
+			}
+			switch (mode) {
+			case RAW_TEXT:
+				if (c == '<' && startsWith(rawTextEnd)) {
+					mode = Mode.NORMAL;
+					rawTextStarted = false;
+					continue;
+				}
+				write(c);
+				inputPosition++;
+				continue;
+			case PRE:
+				if (removeDefaultInputType(c)) {
+					continue;
+				}
+				if (c == '<' && startsWith(PRE_END_TAG)) {
+					for (int i = 0; i < PRE_END_TAG.length(); i++) {
+						write(PRE_END_TAG.charAt(i));
+					}
+					inputPosition += PRE_END_TAG.length();
+					mode = Mode.NORMAL;
+					segmentStarted = false;
+					continue;
+				}
+				write(c);
+				inputPosition++;
+				continue;
+			default:
+				if (removeDefaultInputType(c)) {
+					continue;
+				}
+				if (c == '<' && startsWith(PRE_START_TAG)) {
+					// trim the text before <pre>
+					pending.setLength(0);
+					mode = Mode.PRE;
+					continue;
+				}
+				if (c == '<' && !rawTextStarted) {
+					rawTextEnd = findRawTextEnd();
+					rawTextStarted = rawTextEnd != null;
+				}
+				normal((char) c);
+				inputPosition++;
+				if (c == '>' && rawTextStarted) {
+					mode = Mode.RAW_TEXT;
+				}
+			}
+		}
+		// trim the end of the page
+		pending.setLength(0);
+		flush();
+	}
+
+	private boolean removeDefaultInputType(int c) throws IOException {
+		if (c == '<' && startsWith(INPUT_TAG)) {
+			inputTagFound = true;
+			return false;
+		}
+		if (c == ' ' && inputTagFound && startsWith(DEFAULT_INPUT_TYPE)) {
+			inputPosition += DEFAULT_INPUT_TYPE.length();
+			inputTagFound = false;
+			return true;
+		}
+		return false;
+	}
+
+	private void normal(char c) throws IOException {
+		if (c == '\n' || c == '\t' || c == '\r') {
+			return;
+		}
+		if (c <= ' ') {
+			pending.append(c);
+			return;
+		}
+		if (pending.length() > 0) {
+			// leading whitespaces and whitespaces between tags are removed
+			if (segmentStarted && !(c == '<' && lastWritten == '>' && isWhitespace(pending))) {
+				for (int i = 0; i < pending.length(); i++) {
+					write(pending.charAt(i));
+				}
+			}
+			pending.setLength(0);
+		}
+		segmentStarted = true;
+		write(c);
+	}
 
-		StringBuffer sb = new StringBuffer();
-		while (m.find()) {
-			m.appendReplacement(sb, "$1");
+	private String findRawTextEnd() throws IOException {
+		for (String cur : RAW_TEXT_TAGS) {
+			if (startsWith(cur)) {
+				int next = peek(cur.length());
+				if (next == '>' || next == '/' || next == -1 || Character.isWhitespace(next)) {
+					return "</" + cur.substring(1);
+				}
+			}
 		}
-		m.appendTail(sb);
-		page = sb.toString();
-		if (!page.contains(PRE_START_TAG)) {
-			return fix(page);
+		return null;
+	}
+
+	private void write(int c) throws IOException {
+		if (outputPosition == output.length) {
+			flush();
+		}
+		output[outputPosition++] = (char) c;
+		lastWritten = c;
+	}
+
+	private void flush() throws IOException {
+		out.write(output, 0, outputPosition);
+		outputPosition = 0;
+	}
+
+	private boolean startsWith(String value) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			if (peek(i) != value.charAt(i)) {
+				return false;
+			}
 		}
+		return true;
+	}
 
-		StringBuilder b = new StringBuilder();
-		List<String> parts = getParts(0, page);
-		for (String curPart : parts) {
-			if (curPart.contains(PRE_START_TAG)) {
-				b.append(curPart);
-			} else {
-				b.append(fix(curPart));
+	private int peek(int offset) throws IOException {
+		if (inputPosition + offset >= inputLimit) {
+			fill(offset + 1);
+			if (inputPosition + offset >= inputLimit) {
+				return -1;
 			}
 		}
-		return b.toString();
+		return input[inputPosition + offset];
 	}
 
-	private static String fix(String original) {
-		String page = NEW_LINE_SYMBOLS.matcher(original).replaceAll("");
-		String result = TAG_WHITESPACES.matcher(page).replaceAll("><");
-		return result.trim();
+	private void fill(int required) throws IOException {
+		if (eof) {
+			return;
+		}
+		if (inputPosition > 0) {
+			System.arraycopy(input, inputPosition, input, 0, inputLimit - inputPosition);
+			inputLimit -= inputPosition;
+			inputPosition = 0;
+		}
+		while (inputLimit < required) {
+			int read = in.read(input, inputLimit, input.length - inputLimit);
+			if (read == -1) {
+				eof = true;
+				return;
+			}
+			inputLimit += read;
+		}
 	}
 
-	private static List<String> getParts(int curStart, String original) {
-		List<String> result = new ArrayList<>();
-		int start = original.indexOf(PRE_START_TAG, curStart);
-		if (start == -1) {
-			result.add(original.substring(curStart));
-			return result;
+	// the same as \s after new lines and tabs were removed
+	private static boolean isWhitespace(CharSequence value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c != ' ' && c != '\u000B' && c != '\f') {
+				return false;
+			}
 		}
-		int end = original.indexOf(PRE_END_TAG, start);
-		int newStart = end + PRE_END_TAG.length();
-		result.add(original.substring(curStart, start));
-		result.add(original.substring(start, newStart));
-		List<String> subs = getParts(newStart, original);
-		result.addAll(subs);
-		return result;
+		return true;
 	}
 
-	private HtmlMinifier() {
-		// do nothing
+	// terminators of the line in regular expressions
+	private static boolean isLineTerminator(int c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
 	}
 }
@@ -0,0 +1,341 @@
+package com.st.maven.fingerprint;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Rewrites links of all supported kinds in a single pass. Matchers of every
+ * kind advance side by side over the same input, so it is neither copied nor
+ * scanned again for each kind.
+ */
+class LinkRewriter {
+
+	/*
+	 * All resources should have absolute paths: Valid: <img src="/img/test.png"> .
+	 * Invalid: <img src="test.png"> All resources should point to existing files
+	 * without any pre-processing: Valid: <img src="/img/test.png"> . Invalid: <img
+	 * src="<c:if test="${var}">/img/test.png</c:if>"
+	 */
+	static final Pattern LINK_PATTERN = Pattern.compile("(<link[^>]+href=[\"'])(.*?)([\"'][^>]*>)");
+	static final Pattern SCRIPT_PATTERN = Pattern.compile("([\"'])([^\\s]*?\\.js)([\"'])");
+	static final Pattern IMG_PATTERN = Pattern.compile("(<img[^>]+src=[\"'])(.*?)([\"'][^>]+>)");
+	static final Pattern CSS_URL_PATTERN = Pattern.compile("(url\\(\\s*[\"']?)(.*?)([\"']?\\s*\\))");
+	static final Pattern JSTL_URL_PATTERN = Pattern.compile("(<c:url[^>]+value=\")(.*?)(\"[^>]+>)");
+	// order of precedence. Link found by several patterns is rewritten once
+	static final Pattern[] PATTERNS = new Pattern[] { LINK_PATTERN, SCRIPT_PATTERN, IMG_PATTERN, CSS_URL_PATTERN, JSTL_URL_PATTERN };
+	// longest tag with link supported by the streaming rewriting
+	static final int MAX_MATCH_LENGTH = 64 * 1024;
+	private static final int BLOCK_SIZE = 32 * 1024;
+
+	interface LinkHandler {
+
+		/**
+		 * @param link    link as found in the data
+		 * @param pattern one of {@link LinkRewriter#PATTERNS} which found the
+		 *                link
+		 * @return replacement for the link
+		 */
+		String rewrite(String link, Pattern pattern) throws MojoExecutionException;
+
+	}
+
+	/**
+	 * @return data with rewritten links or null if links of different kinds
+	 *         partially overlap. Result would depend on the order of rewriting
+	 *         then.
+	 */
+	static String rewrite(CharSequence data, LinkHandler handler) throws MojoExecutionException {
+		List<Match> matches = new Scanner().find(data, 0, data.length(), true);
+		if (matches == null) {
+			return null;
+		}
+		StringBuilder result = new StringBuilder(data.length() + matches.size() * 40);
+		int written = 0;
+		for (Match cur : matches) {
+			result.append(data, written, (int) cur.start);
+			result.append(handler.rewrite(cur.link, PATTERNS[cur.pattern]));
+			written = (int) cur.end;
+		}
+		result.append(data, written, data.length());
+		return result.toString();
+	}
+
+	/**
+	 * Rewrites links of one kind after another in the order of
+	 * {@link #PATTERNS}. Every kind copies and scans the whole data again.
+	 * Used when links of different kinds partially overlap
+	 */
+	static String rewriteSequentially(String data, LinkHandler handler) throws MojoExecutionException {
+		String result = data;
+		for (Pattern cur : PATTERNS) {
+			StringBuffer output = new StringBuffer();
+			Matcher m = cur.matcher(result);
+			while (m.find()) {
+				String link = handler.rewrite(m.group(2), cur);
+				m.appendReplacement(output, "$1" + Matcher.quoteReplacement(link) + "$3");
+			}
+			m.appendTail(output);
+			result = output.toString();
+		}
+		return result;
+	}
+
+	/**
+	 * Rewrites links while reading. Only a window of the input is kept in
+	 * memory, so tags with links should not be longer than
+	 * {@link #MAX_MATCH_LENGTH}. Reader throws {@link OverlappingLinksException}
+	 * if links of different kinds partially overlap and
+	 * {@link IOException} with {@link MojoExecutionException} cause if handler
+	 * failed.
+	 */
+	static Reader rewrite(Reader in, LinkHandler handler) {
+		return new RewritingReader(in, handler);
+	}
+
+	/**
+	 * @return all links found in the data. Order is not defined
+	 */
+	static List<String> findLinks(CharSequence data) {
+		List<String> result = new ArrayList<>();
+		for (Match cur : new Scanner().find(data, 0, data.length(), false)) {
+			result.add(cur.link);
+		}
+		return result;
+	}
+
+	/**
+	 * The same as {@link #findLinks(CharSequence)}, but keeps only a window of
+	 * the input in memory
+	 */
+	static List<String> findLinks(Reader in) throws IOException {
+		List<String> result = new ArrayList<>();
+		Scanner scanner = new Scanner();
+		StringBuilder window = new StringBuilder();
+		char[] buffer = new char[BLOCK_SIZE];
+		long base = 0;
+		boolean eof = false;
+		while (!eof) {
+			eof = fill(in, window, buffer);
+			long end = base + window.length();
+			long limit = eof ? end : end - MAX_MATCH_LENGTH;
+			for (Match cur : scanner.find(window, base, limit, false)) {
+				result.add(cur.link);
+			}
+			long trimTo = scanner.getMinResume();
+			window.delete(0, (int) (trimTo - base));
+			base = trimTo;
+		}
+		return result;
+	}
+
+	// reads until window is big enough to find links before its limit.
+	// Returns true if input is over
+	private static boolean fill(Reader in, StringBuilder window, char[] buffer) throws IOException {
+		while (window.length() < MAX_MATCH_LENGTH + BLOCK_SIZE) {
+			int read = in.read(buffer);
+			if (read == -1) {
+				return true;
+			}
+			window.append(buffer, 0, read);
+		}
+		return false;
+	}
+
+	static class OverlappingLinksException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		OverlappingLinksException() {
+			super("links of different kinds overlap");
+		}
+	}
+
+	/**
+	 * Finds links in the consecutive windows of the input. Each pattern
+	 * continues from its own position, so links are the same as if the whole
+	 * input was matched at once.
+	 */
+	private static class Scanner {
+
+		// absolute position where each pattern continues
+		private final long[] resume = new long[PATTERNS.length];
+		private long lastStart = -1;
+		private long lastEnd = -1;
+
+		/**
+		 * @param window part of the input starting at base
+		 * @param limit  absolute position. Only links which start before it
+		 *               are returned
+		 * @param merge  return links in the order of appearance, each once
+		 * @return links or null if links of different kinds partially overlap
+		 */
+		List<Match> find(CharSequence window, long base, long limit, boolean merge) {
+			List<List<Match>> found = new ArrayList<>(PATTERNS.length);
+			for (int i = 0; i < PATTERNS.length; i++) {
+				List<Match> matches = new ArrayList<>();
+				Matcher m = PATTERNS[i].matcher(window);
+				m.useTransparentBounds(true);
+				m.useAnchoringBounds(false);
+				m.region((int) (resume[i] - base), window.length());
+				long next = limit;
+				while (m.find()) {
+					if (base + m.start(2) >= limit) {
+						// found again in the next window
+						next = base + m.start();
+						break;
+					}
+					matches.add(new Match(base + m.start(2), base + m.end(2), m.group(2), i));
+					next = Math.max(limit, base + m.end());
+				}
+				resume[i] = next;
+				found.add(matches);
+			}
+			if (!merge) {
+				List<Match> result = new ArrayList<>();
+				for (List<Match> cur : found) {
+					result.addAll(cur);
+				}
+				return result;
+			}
+			return merge(found);
+		}
+
+		private List<Match> merge(List<List<Match>> found) {
+			int[] index = new int[found.size()];
+			List<Match> result = new ArrayList<>();
+			while (true) {
+				// the leftmost link. Pattern with higher precedence wins the
+				// tie
+				int next = -1;
+				for (int i = 0; i < found.size(); i++) {
+					if (index[i] < found.get(i).size() && (next == -1 || found.get(i).get(index[i]).start < found.get(next).get(index[next]).start)) {
+						next = i;
+					}
+				}
+				if (next == -1) {
+					return result;
+				}
+				Match cur = found.get(next).get(index[next]);
+				index[next]++;
+				if (cur.start == lastStart && cur.end == lastEnd) {
+					// the same link found by the pattern with lower
+					// precedence. Sequential rewriting would see already
+					// rewritten link
+					continue;
+				}
+				if (cur.start < lastEnd) {
+					return null;
+				}
+				result.add(cur);
+				lastStart = cur.start;
+				lastEnd = cur.end;
+			}
+		}
+
+		long getMinResume() {
+			long result = Long.MAX_VALUE;
+			for (long cur : resume) {
+				result = Math.min(result, cur);
+			}
+			return result;
+		}
+	}
+
+	private static class RewritingReader extends Reader {
+
+		private final Reader in;
+		private final LinkHandler handler;
+		private final Scanner scanner = new Scanner();
+		private final StringBuilder window = new StringBuilder();
+		private final char[] buffer = new char[BLOCK_SIZE];
+		private final StringBuilder output = new StringBuilder();
+		private int outputPosition;
+		// absolute position of the window
+		private long base;
+		// absolute position of the input written into output
+		private long written;
+		private boolean eof;
+
+		RewritingReader(Reader in, LinkHandler handler) {
+			this.in = in;
+			this.handler = handler;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			while (outputPosition == output.length()) {
+				if (eof) {
+					return -1;
+				}
+				next();
+			}
+			int result = Math.min(len, output.length() - outputPosition);
+			output.getChars(outputPosition, outputPosition + result, cbuf, off);
+			outputPosition += result;
+			return result;
+		}
+
+		private void next() throws IOException {
+			output.setLength(0);
+			outputPosition = 0;
+			eof = fill(in, window, buffer);
+			long end = base + window.length();
+			long limit = eof ? end : end - MAX_MATCH_LENGTH;
+			List<Match> matches = scanner.find(window, base, limit, true);
+			if (matches == null) {
+				throw new OverlappingLinksException();
+			}
+			for (Match cur : matches) {
+				output.append(window, (int) (written - base), (int) (cur.start - base));
+				try {
+					output.append(handler.rewrite(cur.link, PATTERNS[cur.pattern]));
+				} catch (MojoExecutionException e) {
+					throw new IOException(e.getMessage(), e);
+				}
+				written = cur.end;
+			}
+			// text before the limit can't contain the beginning of a link
+			long commit = eof ? end : Math.max(written, limit);
+			output.append(window, (int) (written - base), (int) (commit - base));
+			written = commit;
+			long trimTo = Math.min(written, scanner.getMinResume());
+			window.delete(0, (int) (trimTo - base));
+			base = trimTo;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	private static class Match {
+
+		// absolute positions of the link
+		private final long start;
+		private final long end;
+		private final String link;
+		// index of the pattern
+		private final int pattern;
+
+		Match(long start, long end, String link, int pattern) {
+			this.start = start;
+			this.end = end;
+			this.link = link;
+			this.pattern = pattern;
+		}
+	}
+
+	private LinkRewriter() {
+		// do nothing
+	}
+}
@@ -0,0 +1,252 @@
+package com.st.maven.fingerprint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Results of minification stored on disk. Key is the hash of the minifier
+ * options and the content, so the cache can be shared between builds and
+ * modules. Warnings of the minifier are stored with the entry and logged on
+ * every hit. Entries are written to a temporary file and then moved, so
+ * concurrent builds never see partial entries. Least recently used entries
+ * are removed when cache grows over the limit.
+ */
+class MinificationCache {
+
+	// part of the key. Entries of the other formats are not read
+	private static final String FORMAT = "2";
+	private static final String TEMP_SUFFIX = ".tmp";
+	// temporary files of the crashed builds
+	private static final long TEMP_TTL = TimeUnit.HOURS.toMillis(1);
+
+	private final File directory;
+	private final long maxSize;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong savedMillis = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+
+	MinificationCache(File directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	interface Minifier {
+
+		String minify(String data, Log log);
+
+	}
+
+	/**
+	 * @param options  minifier and its options. Part of the key
+	 * @param data     data to minify
+	 * @param log      warnings of the minifier are written here
+	 * @param minifier called on cache miss
+	 * @return minified data
+	 */
+	String minify(String options, String data, Log log, Minifier minifier) {
+		File entry = getEntry(options, data);
+		Cached cached = read(entry);
+		if (cached != null) {
+			hits.incrementAndGet();
+			cached.log.replay(log);
+			return cached.value;
+		}
+		misses.incrementAndGet();
+		CollectingLog collected = new CollectingLog();
+		long start = System.nanoTime();
+		String result;
+		try {
+			result = minifier.minify(data, collected);
+		} finally {
+			collected.replay(log);
+		}
+		long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		write(entry, took, collected, result);
+		return result;
+	}
+
+	long getHits() {
+		return hits.get();
+	}
+
+	long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return time spent to minify data which was found in the cache
+	 */
+	long getSavedMillis() {
+		return savedMillis.get();
+	}
+
+	/**
+	 * Remove least recently used entries until the cache fits into the limit
+	 */
+	void evict() throws IOException {
+		if (written.get() == 0 || !directory.isDirectory()) {
+			return;
+		}
+		List<CachedFile> files = new ArrayList<>();
+		long now = System.currentTimeMillis();
+		try (Stream<Path> stream = Files.walk(directory.toPath())) {
+			stream.forEach(cur -> {
+				try {
+					BasicFileAttributes attrs = Files.readAttributes(cur, BasicFileAttributes.class);
+					if (!attrs.isRegularFile()) {
+						return;
+					}
+					long lastModified = attrs.lastModifiedTime().toMillis();
+					if (cur.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+						if (now - lastModified > TEMP_TTL) {
+							Files.deleteIfExists(cur);
+						}
+						return;
+					}
+					files.add(new CachedFile(cur, attrs.size(), lastModified));
+				} catch (IOException e) {
+					// removed by the concurrent build
+				}
+			});
+		}
+		long total = 0;
+		for (CachedFile cur : files) {
+			total += cur.size;
+		}
+		if (total <= maxSize) {
+			return;
+		}
+		files.sort(Comparator.comparingLong(o -> o.lastModified));
+		for (CachedFile cur : files) {
+			if (total <= maxSize) {
+				break;
+			}
+			Files.deleteIfExists(cur.path);
+			total -= cur.size;
+		}
+	}
+
+	private File getEntry(String options, String data) {
+		MessageDigest digest = DigestUtils.getSha256Digest();
+		digest.update(FORMAT.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(options.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(data.getBytes(StandardCharsets.UTF_8));
+		String key = Hex.encodeHexString(digest.digest());
+		return new File(new File(directory, key.substring(0, 2)), key);
+	}
+
+	/**
+	 * Time spent to minify (long), warnings of the minifier (see
+	 * {@link CollectingLog#write(DataOutputStream)}) and minified data in
+	 * UTF-8
+	 */
+	private Cached read(File entry) {
+		byte[] data;
+		try {
+			data = Files.readAllBytes(entry.toPath());
+		} catch (IOException e) {
+			// missing or removed by the concurrent build
+			return null;
+		}
+		Cached result;
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+			long took = in.readLong();
+			CollectingLog log = CollectingLog.read(in);
+			result = new Cached(new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8), log);
+			savedMillis.addAndGet(took);
+		} catch (IOException e) {
+			// corrupted
+			return null;
+		}
+		// recently used
+		try {
+			Files.setLastModifiedTime(entry.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// removed by the concurrent build
+		}
+		return result;
+	}
+
+	private void write(File entry, long took, CollectingLog log, String value) {
+		File parent = entry.getParentFile();
+		Path temp = null;
+		try {
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			try (DataOutputStream out = new DataOutputStream(data)) {
+				out.writeLong(took);
+				log.write(out);
+				out.write(value.getBytes(StandardCharsets.UTF_8));
+			}
+			Files.createDirectories(parent.toPath());
+			temp = Files.createTempFile(parent.toPath(), entry.getName(), TEMP_SUFFIX);
+			Files.write(temp, data.toByteArray());
+			try {
+				Files.move(temp, entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			temp = null;
+			written.incrementAndGet();
+		} catch (IOException e) {
+			// cache is optional
+		} finally {
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	private static class Cached {
+
+		private final String value;
+		private final CollectingLog log;
+
+		Cached(String value, CollectingLog log) {
+			this.value = value;
+			this.log = log;
+		}
+	}
+
+	private static class CachedFile {
+
+		private final Path path;
+		private final long size;
+		private final long lastModified;
+
+		CachedFile(Path path, long size, long lastModified) {
+			this.path = path;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+	}
+}
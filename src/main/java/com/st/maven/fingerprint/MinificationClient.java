@@ -0,0 +1,333 @@
+package com.st.maven.fingerprint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Sends minification jobs to the {@link MinificationDaemon}. Daemon is
+ * started if it is not running yet. Each thread uses its own connection.
+ * Once daemon is unavailable, everything is minified in-process. Port file
+ * is trusted only in the directory owned by the current user and closed for
+ * everyone else, so other users can't substitute the daemon.
+ */
+class MinificationClient implements AutoCloseable {
+
+	private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+	// daemon is stopped, hangs or stuck in the minifier. Job is minified
+	// in-process then
+	private static final int READ_TIMEOUT_MILLIS = (int) TimeUnit.MINUTES.toMillis(2);
+	private static final long START_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+	// file lock is held by the whole jvm
+	private static final Object START_LOCK = new Object();
+	static final Set<PosixFilePermission> OWNER_ONLY = EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE);
+
+	private final File portFile;
+	private final long idleTimeoutSeconds;
+	private final boolean start;
+	private final int readTimeoutMillis;
+	private final Log log;
+	private final ConcurrentLinkedQueue<Connection> connections = new ConcurrentLinkedQueue<>();
+	private volatile boolean unavailable;
+
+	/**
+	 * @param directory          directory with the port files. Daemons of the
+	 *                           different plugin versions don't share it
+	 * @param idleTimeoutSeconds daemon exits if there were no jobs for this
+	 *                           time
+	 */
+	MinificationClient(File directory, long idleTimeoutSeconds, Log log) {
+		this(new File(directory, "daemon-" + DigestUtils.md5Hex(getClasspath()) + ".port"), idleTimeoutSeconds, true, log);
+	}
+
+	MinificationClient(File portFile, long idleTimeoutSeconds, boolean start, Log log) {
+		this(portFile, idleTimeoutSeconds, start, READ_TIMEOUT_MILLIS, log);
+	}
+
+	MinificationClient(File portFile, long idleTimeoutSeconds, boolean start, int readTimeoutMillis, Log log) {
+		this.portFile = portFile;
+		this.idleTimeoutSeconds = idleTimeoutSeconds;
+		this.start = start;
+		this.readTimeoutMillis = readTimeoutMillis;
+		this.log = log;
+	}
+
+	/**
+	 * @param log warnings of the minifier are written here
+	 */
+	String compressJavaScript(String data, Log log) {
+		String result = send(MinificationDaemon.JAVASCRIPT, data, log);
+		if (result == null) {
+			return Compressor.compressJavaScript(new StringReader(data), log);
+		}
+		return result;
+	}
+
+	/**
+	 * @param log warnings of the minifier are written here
+	 */
+	String compressCSS(String data, Log log) {
+		String result = send(MinificationDaemon.CSS, data, log);
+		if (result == null) {
+			return Compressor.compressCSS(new StringReader(data), log);
+		}
+		return result;
+	}
+
+	/**
+	 * @return minified data or null if daemon is unavailable
+	 */
+	private String send(byte type, String data, Log jobLog) {
+		if (unavailable) {
+			return null;
+		}
+		Connection connection = connections.poll();
+		try {
+			if (connection == null) {
+				connection = connect();
+			}
+			connection.out.writeByte(type);
+			MinificationDaemon.writeString(connection.out, data);
+			connection.out.flush();
+			byte status = connection.in.readByte();
+			CollectingLog.read(connection.in).replay(jobLog);
+			String result = MinificationDaemon.readString(connection.in);
+			connections.add(connection);
+			if (status != MinificationDaemon.STATUS_OK) {
+				throw new RuntimeException(result);
+			}
+			return result;
+		} catch (IOException e) {
+			// including read timeout. Late response can't be told apart from
+			// the next one, so connection is not reused
+			if (connection != null) {
+				connection.close();
+			}
+			if (!unavailable) {
+				unavailable = true;
+				log.warn("minification daemon is unavailable. minifying in-process: " + e.getMessage());
+			}
+			return null;
+		}
+	}
+
+	private Connection connect() throws IOException {
+		createPrivateDirectory(portFile.getParentFile());
+		Address address = readAddress();
+		if (address != null) {
+			try {
+				return new Connection(address, readTimeoutMillis);
+			} catch (IOException e) {
+				// daemon exited
+			}
+		}
+		if (!start) {
+			throw new IOException("daemon is not running");
+		}
+		synchronized (START_LOCK) {
+			return start(address);
+		}
+	}
+
+	private Connection start(Address address) throws IOException {
+		File parent = portFile.getParentFile();
+		// executions of the concurrent builds start single daemon
+		try (FileChannel channel = FileChannel.open(new File(parent, portFile.getName() + ".lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE); FileLock lock = channel.lock()) {
+			Address started = readAddress();
+			if (started != null && (address == null || started.port != address.port)) {
+				try {
+					return new Connection(started, readTimeoutMillis);
+				} catch (IOException e) {
+					// daemon exited
+				}
+			}
+			Files.deleteIfExists(portFile.toPath());
+			startDaemon();
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(START_TIMEOUT_MILLIS);
+			while (System.nanoTime() < deadline) {
+				started = readAddress();
+				if (started != null) {
+					return new Connection(started, readTimeoutMillis);
+				}
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("interrupted", e);
+				}
+			}
+			throw new IOException("daemon didn't start in " + START_TIMEOUT_MILLIS + "ms");
+		}
+	}
+
+	private void startDaemon() throws IOException {
+		File java = new File(new File(System.getProperty("java.home"), "bin"), "java");
+		ProcessBuilder builder = new ProcessBuilder(java.getAbsolutePath(), "-cp", getClasspath(), MinificationDaemon.class.getName(), portFile.getAbsolutePath(), String.valueOf(idleTimeoutSeconds));
+		File output = new File(portFile.getParentFile(), portFile.getName() + ".log");
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(output);
+		builder.start();
+		log.info("minification daemon started. output: " + output.getAbsolutePath());
+	}
+
+	private Address readAddress() {
+		String[] parts;
+		try {
+			parts = new String(Files.readAllBytes(portFile.toPath()), StandardCharsets.US_ASCII).trim().split("\n");
+		} catch (IOException e) {
+			return null;
+		}
+		if (parts.length != 2) {
+			return null;
+		}
+		try {
+			return new Address(Integer.parseInt(parts[0].trim()), parts[1].trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates owner-only directory or checks that the existing one belongs to
+	 * the current user. Permissions of the existing directory are restricted
+	 * to the owner
+	 */
+	static void createPrivateDirectory(File directory) throws IOException {
+		Path path = directory.toPath();
+		boolean posix = path.getFileSystem().supportedFileAttributeViews().contains("posix");
+		if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+			Path parent = path.toAbsolutePath().getParent();
+			if (parent != null) {
+				Files.createDirectories(parent);
+			}
+			try {
+				if (posix) {
+					Files.createDirectory(path, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+				} else {
+					Files.createDirectory(path);
+				}
+			} catch (FileAlreadyExistsException e) {
+				// created concurrently. Checked below
+			}
+		}
+		// symbolic link might point to the directory of another user
+		BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		if (!attrs.isDirectory()) {
+			throw new IOException("not a directory: " + directory.getAbsolutePath());
+		}
+		UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+		UserPrincipal current = path.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+		if (!owner.equals(current)) {
+			throw new IOException("directory is owned by another user: " + owner.getName() + " " + directory.getAbsolutePath());
+		}
+		if (posix && !Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS).equals(OWNER_ONLY)) {
+			Files.setPosixFilePermissions(path, OWNER_ONLY);
+		}
+	}
+
+	@Override
+	public void close() {
+		Connection cur;
+		while ((cur = connections.poll()) != null) {
+			cur.close();
+		}
+	}
+
+	// plugin classes, yuicompressor and maven logging api
+	private static String getClasspath() {
+		Set<String> result = new LinkedHashSet<>();
+		ClassLoader loader = MinificationClient.class.getClassLoader();
+		if (loader instanceof URLClassLoader) {
+			for (URL cur : ((URLClassLoader) loader).getURLs()) {
+				result.add(toPath(cur));
+			}
+		} else {
+			for (String cur : System.getProperty("java.class.path").split(File.pathSeparator)) {
+				result.add(cur);
+			}
+		}
+		URL logApi = Log.class.getProtectionDomain().getCodeSource().getLocation();
+		result.add(toPath(logApi));
+		return String.join(File.pathSeparator, result);
+	}
+
+	private static String toPath(URL url) {
+		try {
+			return Paths.get(url.toURI()).toString();
+		} catch (Exception e) {
+			return url.getPath();
+		}
+	}
+
+	// port and the token the daemon expects from every connection
+	private static class Address {
+
+		private final int port;
+		private final String token;
+
+		Address(int port, String token) {
+			this.port = port;
+			this.token = token;
+		}
+	}
+
+	private static class Connection {
+
+		private final Socket socket;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+
+		Connection(Address address, int readTimeoutMillis) throws IOException {
+			socket = new Socket();
+			try {
+				socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), address.port), CONNECT_TIMEOUT_MILLIS);
+				socket.setSoTimeout(readTimeoutMillis);
+				in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+				// sent together with the first job
+				out.writeUTF(address.token);
+			} catch (IOException e) {
+				socket.close();
+				throw e;
+			}
+		}
+
+		void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+}
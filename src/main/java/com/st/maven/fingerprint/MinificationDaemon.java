@@ -0,0 +1,198 @@
+package com.st.maven.fingerprint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Long-lived process which minifies javascript and css. Rhino stays JIT-warm
+ * between the executions and builds. Listens on the loopback interface and
+ * writes its port and random token into the owner-only file. Connections
+ * which don't start with the token are closed. Every connection is served by
+ * its own thread, so jobs of the different connections run concurrently.
+ * Exits once there were no jobs for the idle timeout.
+ *
+ * Connection starts with the token (UTF). Request: type (byte), length of the data (int), data in UTF-8. Response:
+ * status (byte), number of messages (int), each message as level (byte) and
+ * text (UTF), length of the result or error (int) and result or error in
+ * UTF-8.
+ */
+class MinificationDaemon implements AutoCloseable {
+
+	static final byte JAVASCRIPT = 1;
+	static final byte CSS = 2;
+	static final byte STATUS_OK = 0;
+	static final byte STATUS_FAILED = 1;
+
+	private final ServerSocket serverSocket;
+	private final long idleTimeoutMillis;
+	private final byte[] token = new byte[32];
+	private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+		Thread result = new Thread(r, "minification");
+		result.setDaemon(true);
+		return result;
+	});
+	private final AtomicInteger activeJobs = new AtomicInteger();
+	private final AtomicLong lastActivity = new AtomicLong(System.nanoTime());
+
+	MinificationDaemon(long idleTimeoutMillis) throws IOException {
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		new SecureRandom().nextBytes(token);
+		serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		// check for idle timeout at least once a second
+		serverSocket.setSoTimeout((int) Math.max(1, Math.min(idleTimeoutMillis, 1000)));
+	}
+
+	int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	String getToken() {
+		return Hex.encodeHexString(token);
+	}
+
+	/**
+	 * Accepts connections until idle timeout or close
+	 */
+	void run() throws IOException {
+		while (!serverSocket.isClosed()) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (SocketTimeoutException e) {
+				if (activeJobs.get() == 0 && System.nanoTime() - lastActivity.get() > TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis)) {
+					return;
+				}
+				continue;
+			} catch (IOException e) {
+				if (serverSocket.isClosed()) {
+					return;
+				}
+				throw e;
+			}
+			lastActivity.set(System.nanoTime());
+			executor.execute(() -> serve(socket));
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+		executor.shutdownNow();
+	}
+
+	private void serve(Socket socket) {
+		try (Socket s = socket; DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream())); DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+			if (!MessageDigest.isEqual(getToken().getBytes(StandardCharsets.US_ASCII), in.readUTF().getBytes(StandardCharsets.US_ASCII))) {
+				return;
+			}
+			while (true) {
+				byte type;
+				try {
+					type = in.readByte();
+				} catch (EOFException e) {
+					return;
+				}
+				String data = readString(in);
+				activeJobs.incrementAndGet();
+				try {
+					minify(type, data, out);
+				} finally {
+					activeJobs.decrementAndGet();
+					lastActivity.set(System.nanoTime());
+				}
+				out.flush();
+			}
+		} catch (IOException e) {
+			// client disconnected
+		}
+	}
+
+	private static void minify(byte type, String data, DataOutputStream out) throws IOException {
+		CollectingLog log = new CollectingLog();
+		String result;
+		byte status = STATUS_OK;
+		try {
+			if (type == JAVASCRIPT) {
+				result = Compressor.compressJavaScript(new StringReader(data), log);
+			} else if (type == CSS) {
+				result = Compressor.compressCSS(new StringReader(data), log);
+			} else {
+				result = "unsupported type: " + type;
+				status = STATUS_FAILED;
+			}
+		} catch (RuntimeException e) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			result = e.getMessage() + ": " + cause.getMessage();
+			status = STATUS_FAILED;
+		}
+		out.writeByte(status);
+		log.write(out);
+		writeString(out, result);
+	}
+
+	static String readString(DataInputStream in) throws IOException {
+		byte[] result = new byte[in.readInt()];
+		in.readFully(result);
+		return new String(result, StandardCharsets.UTF_8);
+	}
+
+	static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] data = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	/**
+	 * @param args file to write the port and the token into and idle timeout
+	 *             in seconds
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("usage: MinificationDaemon <port file> <idle timeout seconds>");
+			System.exit(1);
+		}
+		File portFile = new File(args[0]);
+		try (MinificationDaemon daemon = new MinificationDaemon(TimeUnit.SECONDS.toMillis(Long.parseLong(args[1])))) {
+			String address = daemon.getPort() + "\n" + daemon.getToken();
+			// clients never see partial port. Token is readable only by the
+			// owner
+			File temp = new File(portFile.getParentFile(), portFile.getName() + ".tmp");
+			Files.deleteIfExists(temp.toPath());
+			if (temp.toPath().getFileSystem().supportedFileAttributeViews().contains("posix")) {
+				Files.createFile(temp.toPath(), PosixFilePermissions.asFileAttribute(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE)));
+			}
+			Files.write(temp.toPath(), address.getBytes(StandardCharsets.US_ASCII));
+			Files.move(temp.toPath(), portFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			daemon.run();
+			// the next daemon might have been started already
+			if (portFile.isFile() && address.equals(new String(Files.readAllBytes(portFile.toPath()), StandardCharsets.US_ASCII).trim())) {
+				Files.deleteIfExists(portFile.toPath());
+			}
+		}
+	}
+}
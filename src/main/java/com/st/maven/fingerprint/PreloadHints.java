@@ -0,0 +1,210 @@
+package com.st.maven.fingerprint;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Preload tags injected into the head of the pages and the same hints as
+ * Link headers. Headers are written as nginx map from the page uri, so they
+ * could be sent as 103 Early Hints.
+ */
+class PreloadHints {
+
+	private static final Pattern HEAD_PATTERN = Pattern.compile("<head(?:\\s[^>]*)?>", Pattern.CASE_INSENSITIVE);
+	private static final Pattern SCRIPT_PATTERN = Pattern.compile("<script\\b[^>]*>", Pattern.CASE_INSENSITIVE);
+	private static final Pattern LINK_PATTERN = Pattern.compile("<link\\b[^>]*>", Pattern.CASE_INSENSITIVE);
+	private static final Pattern MODULE_PATTERN = Pattern.compile("\\btype\\s*=\\s*[\"']?module\\b", Pattern.CASE_INSENSITIVE);
+	private static final Pattern PRELOAD_PATTERN = Pattern.compile("\\brel\\s*=\\s*[\"']?(?:preload|modulepreload)\\b", Pattern.CASE_INSENSITIVE);
+	private static final Pattern SRC_PATTERN = Pattern.compile("\\bsrc\\s*=\\s*[\"']([^\"']+)[\"']", Pattern.CASE_INSENSITIVE);
+	private static final Pattern HREF_PATTERN = Pattern.compile("\\bhref\\s*=\\s*[\"']([^\"']+)[\"']", Pattern.CASE_INSENSITIVE);
+	// tags written by inject
+	private static final Pattern HINT_PATTERN = Pattern.compile("<link rel=\"(preload|modulepreload)\" href=\"([^\"]*)\"(?: as=\"(\\w+)\")?( crossorigin)?>");
+
+	private PreloadHints() {
+		// do nothing
+	}
+
+	/**
+	 * @return src of &lt;script type="module"&gt;
+	 */
+	static Set<String> findModules(CharSequence html) {
+		return findAttributes(html, SCRIPT_PATTERN, MODULE_PATTERN, SRC_PATTERN);
+	}
+
+	/**
+	 * @return resources already preloaded by the page
+	 */
+	static Set<String> findPreloaded(CharSequence html) {
+		return findAttributes(html, LINK_PATTERN, PRELOAD_PATTERN, HREF_PATTERN);
+	}
+
+	private static Set<String> findAttributes(CharSequence html, Pattern tag, Pattern condition, Pattern attribute) {
+		Set<String> result = new HashSet<>();
+		Matcher m = tag.matcher(html);
+		while (m.find()) {
+			String cur = m.group();
+			if (!condition.matcher(cur).find()) {
+				continue;
+			}
+			Matcher value = attribute.matcher(cur);
+			if (value.find()) {
+				result.add(value.group(1));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return page with hints right after the opening &lt;head&gt; or the same
+	 *         page if it has no head
+	 */
+	static String inject(String html, List<Hint> hints) {
+		if (hints.isEmpty()) {
+			return html;
+		}
+		Matcher m = HEAD_PATTERN.matcher(html);
+		if (!m.find()) {
+			return html;
+		}
+		StringBuilder result = new StringBuilder(html.length() + hints.size() * 64);
+		result.append(html, 0, m.end());
+		for (Hint cur : hints) {
+			if (cur.module) {
+				result.append("<link rel=\"modulepreload\" href=\"").append(cur.href).append("\">");
+				continue;
+			}
+			result.append("<link rel=\"preload\" href=\"").append(cur.href).append("\" as=\"").append(cur.type.getDestination()).append('"');
+			// fonts are always fetched in cors mode
+			if (cur.type == PreloadType.FONT) {
+				result.append(" crossorigin");
+			}
+			result.append('>');
+		}
+		result.append(html, m.end(), html.length());
+		return result.toString();
+	}
+
+	/**
+	 * @param path absolute link of the stylesheet
+	 * @return fonts referenced by url()
+	 */
+	static List<String> findFonts(String path, CharSequence css) {
+		List<String> result = new ArrayList<>();
+		Matcher m = LinkRewriter.CSS_URL_PATTERN.matcher(css);
+		while (m.find()) {
+			String link = m.group(2).trim();
+			// fragment doesn't change the request
+			int fragment = link.indexOf('#');
+			if (fragment != -1) {
+				link = link.substring(0, fragment);
+			}
+			if (link.startsWith("data:") || PreloadType.fromPath(stripQuery(link)) != PreloadType.FONT) {
+				continue;
+			}
+			if (!link.startsWith("/") && link.indexOf(':') == -1) {
+				link = CssImportFlattener.resolve(path, link);
+				if (link == null) {
+					continue;
+				}
+			}
+			if (!result.contains(link)) {
+				result.add(link);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param prefix removed from the links. For example jsp context path
+	 * @return value of the Link header with the hints injected into the page
+	 *         or null if there are none
+	 */
+	static String getHeader(CharSequence html, String prefix) {
+		StringBuilder result = new StringBuilder();
+		Matcher m = HINT_PATTERN.matcher(html);
+		while (m.find()) {
+			String href = m.group(2);
+			if (href.startsWith(prefix)) {
+				href = href.substring(prefix.length());
+			}
+			if (result.length() > 0) {
+				result.append(", ");
+			}
+			result.append('<').append(href).append(">; rel=").append(m.group(1));
+			if (m.group(3) != null) {
+				result.append("; as=").append(m.group(3));
+			}
+			if (m.group(4) != null) {
+				result.append("; crossorigin");
+			}
+		}
+		if (result.length() == 0) {
+			return null;
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Usage: add_header Link $fingerprint_preload; early_hints on;
+	 *
+	 * @param headers page uri to the Link header. Values with nginx variables
+	 *                are skipped
+	 */
+	static void saveNginxMap(File file, Map<String, String> headers) throws IOException {
+		File parent = file.getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs()) {
+			throw new IOException("unable to create directory: " + parent.getAbsolutePath());
+		}
+		try (Writer w = new BufferedWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+			w.append("map $uri $fingerprint_preload {\n");
+			w.append("\tdefault \"\";\n");
+			for (Map.Entry<String, String> cur : headers.entrySet()) {
+				if (cur.getKey().indexOf('$') != -1 || cur.getValue().indexOf('$') != -1) {
+					continue;
+				}
+				w.append('\t').append(quote(cur.getKey())).append(' ').append(quote(cur.getValue())).append(";\n");
+			}
+			w.append("}\n");
+		}
+	}
+
+	private static String quote(String value) {
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	private static String stripQuery(String link) {
+		int index = link.indexOf('?');
+		if (index == -1) {
+			index = link.indexOf('#');
+		}
+		if (index == -1) {
+			return link;
+		}
+		return link.substring(0, index);
+	}
+
+	static class Hint {
+
+		// as written in the page
+		final String href;
+		final PreloadType type;
+		final boolean module;
+
+		Hint(String href, PreloadType type, boolean module) {
+			this.href = href;
+			this.type = type;
+			this.module = module;
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.st.maven.fingerprint;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Resources referenced by pages which are preloaded. Type is detected by the
+ * extension
+ */
+public enum PreloadType {
+
+	STYLE("style", "css"),
+	/**
+	 * Scripts of &lt;script type="module"&gt; are preloaded with modulepreload
+	 */
+	SCRIPT("script", "js", "mjs"),
+	/**
+	 * Fonts referenced by the stylesheets of the page
+	 */
+	FONT("font", "woff2", "woff", "ttf", "otf", "eot"),
+	IMAGE("image", "png", "jpg", "jpeg", "gif", "svg", "webp", "avif");
+
+	private final String destination;
+	private final Set<String> extensions;
+
+	PreloadType(String destination, String... extensions) {
+		this.destination = destination;
+		this.extensions = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(extensions)));
+	}
+
+	/**
+	 * @return value of the "as" attribute
+	 */
+	String getDestination() {
+		return destination;
+	}
+
+	/**
+	 * @param path link without query
+	 * @return type or null if resource is not preloaded
+	 */
+	static PreloadType fromPath(String path) {
+		String extension = Util.getExtension(path.substring(path.lastIndexOf('/') + 1));
+		if (extension == null) {
+			return null;
+		}
+		extension = extension.toLowerCase(Locale.ROOT);
+		for (PreloadType cur : values()) {
+			if (cur.extensions.contains(extension)) {
+				return cur;
+			}
+		}
+		return null;
+	}
+}
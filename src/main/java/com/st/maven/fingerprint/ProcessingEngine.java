@@ -0,0 +1,122 @@
+package com.st.maven.fingerprint;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import com.st.maven.fingerprint.ReferenceGraph.Component;
+
+/**
+ * Runs components of the {@link ReferenceGraph}. Component is submitted once
+ * all components it references were processed. Scheduling is done by the
+ * calling thread only.
+ */
+class ProcessingEngine {
+
+	interface FileTask {
+
+		void process(File file) throws MojoExecutionException;
+
+	}
+
+	static void run(List<Component> components, ExecutorService executor, FileTask task) throws MojoExecutionException {
+		if (executor == null) {
+			// components are already in the dependency order
+			for (Component cur : components) {
+				processComponent(cur, task);
+			}
+			return;
+		}
+
+		Map<Component, Integer> pending = new HashMap<>();
+		Map<Component, List<Component>> dependents = new HashMap<>();
+		for (Component cur : components) {
+			pending.put(cur, cur.dependencies.size());
+			for (Component curDependency : cur.dependencies) {
+				dependents.computeIfAbsent(curDependency, k -> new ArrayList<>()).add(cur);
+			}
+		}
+
+		CompletionService<Component> completionService = new ExecutorCompletionService<>(executor);
+		int running = 0;
+		for (Component cur : components) {
+			if (cur.dependencies.isEmpty()) {
+				submit(completionService, cur, task);
+				running++;
+			}
+		}
+
+		Throwable failure = null;
+		while (running > 0) {
+			Future<Component> completed;
+			try {
+				completed = completionService.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MojoExecutionException("interrupted", e);
+			}
+			running--;
+			Component component;
+			try {
+				component = completed.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MojoExecutionException("interrupted", e);
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause();
+				}
+				continue;
+			}
+			// let already running components finish, but don't start new
+			if (failure != null) {
+				continue;
+			}
+			List<Component> curDependents = dependents.get(component);
+			if (curDependents == null) {
+				continue;
+			}
+			for (Component cur : curDependents) {
+				int left = pending.get(cur) - 1;
+				pending.put(cur, left);
+				if (left == 0) {
+					submit(completionService, cur, task);
+					running++;
+				}
+			}
+		}
+
+		if (failure instanceof MojoExecutionException) {
+			throw (MojoExecutionException) failure;
+		}
+		if (failure != null) {
+			throw new MojoExecutionException("unable to process", failure);
+		}
+	}
+
+	private static void submit(CompletionService<Component> completionService, Component component, FileTask task) {
+		completionService.submit(() -> {
+			processComponent(component, task);
+			return component;
+		});
+	}
+
+	private static void processComponent(Component component, FileTask task) throws MojoExecutionException {
+		for (File cur : component.files) {
+			task.process(cur);
+		}
+	}
+
+	private ProcessingEngine() {
+		// do nothing
+	}
+}
@@ -0,0 +1,76 @@
+package com.st.maven.fingerprint;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resources reachable from the entry points by the references found in the
+ * processed files. Resources which are not processed have no references,
+ * so they are leaves of the graph.
+ */
+class Reachability {
+
+	private Reachability() {
+		// do nothing
+	}
+
+	/**
+	 * @param roots      normalized paths of the entry points
+	 * @param references normalized path to the normalized paths it references
+	 * @param duplicates duplicate to its canonical resource. Canonical is
+	 *                   reachable if any of its duplicates is reachable
+	 * @return normalized paths of the reachable resources including roots
+	 */
+	static Set<String> findReachable(Collection<String> roots, Map<String, Set<String>> references, Map<String, String> duplicates) {
+		Set<String> result = new HashSet<>(roots);
+		Deque<String> queue = new ArrayDeque<>(roots);
+		while (!queue.isEmpty()) {
+			String cur = queue.poll();
+			String canonical = duplicates.get(cur);
+			if (canonical != null && result.add(canonical)) {
+				queue.add(canonical);
+			}
+			Set<String> curReferences = references.get(cur);
+			if (curReferences == null) {
+				continue;
+			}
+			for (String curReference : curReferences) {
+				if (result.add(curReference)) {
+					queue.add(curReference);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param pruned resources sorted by path
+	 */
+	static void saveReport(File file, List<FileIndex.Entry> pruned) throws IOException {
+		File parent = file.getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs()) {
+			throw new IOException("unable to create directory: " + parent.getAbsolutePath());
+		}
+		long bytes = 0;
+		for (FileIndex.Entry cur : pruned) {
+			bytes += cur.size;
+		}
+		try (Writer w = new BufferedWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+			w.append("# files: ").append(String.valueOf(pruned.size())).append(" bytes: ").append(String.valueOf(bytes)).append('\n');
+			for (FileIndex.Entry cur : pruned) {
+				w.append(cur.relativePath.replace(File.separatorChar, '/')).append('\t').append(String.valueOf(cur.size)).append('\n');
+			}
+		}
+	}
+}
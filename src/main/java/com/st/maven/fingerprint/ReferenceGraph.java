@@ -0,0 +1,155 @@
+package com.st.maven.fingerprint;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Files to process and the references between them. Files are grouped into
+ * strongly connected components, so reference cycles are processed
+ * sequentially within a single component, while components are independent
+ * units of work ordered by their references.
+ */
+class ReferenceGraph {
+
+	private final List<File> files;
+	private final Map<String, Integer> indexes = new HashMap<>();
+	private final List<Set<Integer>> references = new ArrayList<>();
+
+	ReferenceGraph(Collection<File> files, Comparator<File> order) {
+		this.files = new ArrayList<>(files);
+		Collections.sort(this.files, order.thenComparing(File::getAbsolutePath));
+		for (int i = 0; i < this.files.size(); i++) {
+			indexes.put(Util.normalize(this.files.get(i)), i);
+			references.add(new LinkedHashSet<>());
+		}
+	}
+
+	boolean contains(String path) {
+		return indexes.containsKey(path);
+	}
+
+	List<File> getFiles() {
+		return Collections.unmodifiableList(files);
+	}
+
+	/**
+	 * @param from file which contains the link
+	 * @param to   normalized path of the referenced file. References to the
+	 *             files outside of the graph are ignored.
+	 */
+	void addReference(File from, String to) {
+		Integer fromIndex = indexes.get(Util.normalize(from));
+		Integer toIndex = indexes.get(to);
+		if (fromIndex == null || toIndex == null || fromIndex.equals(toIndex)) {
+			return;
+		}
+		references.get(fromIndex).add(toIndex);
+	}
+
+	/**
+	 * @return components ordered so that every component comes after all
+	 *         components it references. Files within component are in the
+	 *         graph order.
+	 */
+	List<Component> getComponents() {
+		int size = files.size();
+		int[][] adjacency = new int[size][];
+		for (int i = 0; i < size; i++) {
+			Set<Integer> cur = references.get(i);
+			adjacency[i] = new int[cur.size()];
+			int j = 0;
+			for (Integer curReference : cur) {
+				adjacency[i][j++] = curReference;
+			}
+			Arrays.sort(adjacency[i]);
+		}
+
+		// iterative Tarjan's algorithm. Long chains of references won't
+		// overflow the stack
+		int[] index = new int[size];
+		int[] lowLink = new int[size];
+		int[] nextEdge = new int[size];
+		int[] componentOf = new int[size];
+		boolean[] onStack = new boolean[size];
+		Arrays.fill(index, -1);
+		Deque<Integer> stack = new ArrayDeque<>();
+		Deque<Integer> callStack = new ArrayDeque<>();
+		List<Component> result = new ArrayList<>();
+		int counter = 0;
+		for (int root = 0; root < size; root++) {
+			if (index[root] != -1) {
+				continue;
+			}
+			index[root] = lowLink[root] = counter++;
+			stack.push(root);
+			onStack[root] = true;
+			callStack.push(root);
+			while (!callStack.isEmpty()) {
+				int v = callStack.peek();
+				if (nextEdge[v] < adjacency[v].length) {
+					int w = adjacency[v][nextEdge[v]++];
+					if (index[w] == -1) {
+						index[w] = lowLink[w] = counter++;
+						stack.push(w);
+						onStack[w] = true;
+						callStack.push(w);
+					} else if (onStack[w]) {
+						lowLink[v] = Math.min(lowLink[v], index[w]);
+					}
+					continue;
+				}
+				callStack.pop();
+				if (!callStack.isEmpty()) {
+					int parent = callStack.peek();
+					lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+				}
+				if (lowLink[v] != index[v]) {
+					continue;
+				}
+				List<Integer> members = new ArrayList<>();
+				int w;
+				do {
+					w = stack.pop();
+					onStack[w] = false;
+					componentOf[w] = result.size();
+					members.add(w);
+				} while (w != v);
+				Collections.sort(members);
+				Component component = new Component();
+				for (Integer cur : members) {
+					component.files.add(files.get(cur));
+				}
+				result.add(component);
+			}
+		}
+
+		for (int i = 0; i < size; i++) {
+			Component component = result.get(componentOf[i]);
+			for (int cur : adjacency[i]) {
+				Component dependency = result.get(componentOf[cur]);
+				if (dependency != component) {
+					component.dependencies.add(dependency);
+				}
+			}
+		}
+		return result;
+	}
+
+	static class Component {
+
+		final List<File> files = new ArrayList<>();
+		final Set<Component> dependencies = new LinkedHashSet<>();
+
+	}
+}
@@ -0,0 +1,43 @@
+package com.st.maven.fingerprint;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exclude and include rules. Link is excluded if it matches some exclude
+ * rule and doesn't match any include rule. The same link is checked by
+ * several stages of the build, so hits are counted only once per distinct
+ * link.
+ */
+class ResourceMatcher {
+
+	private final ResourceRules excludes;
+	private final ResourceRules includes;
+	// links which hits are already counted
+	private final Set<String> counted = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @throws IllegalArgumentException if some regex is invalid
+	 */
+	ResourceMatcher(List<String> excludes, List<String> includes) {
+		this.excludes = new ResourceRules(excludes);
+		this.includes = new ResourceRules(includes);
+	}
+
+	boolean isExcluded(String link) {
+		if (excludes.isEmpty()) {
+			return false;
+		}
+		boolean count = counted.add(link);
+		return excludes.matches(link, count) && !includes.matches(link, count);
+	}
+
+	List<ResourceRules.Rule> getExcludes() {
+		return excludes.getRules();
+	}
+
+	List<ResourceRules.Rule> getIncludes() {
+		return includes.getRules();
+	}
+}
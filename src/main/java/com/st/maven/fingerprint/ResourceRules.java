@@ -0,0 +1,222 @@
+package com.st.maven.fingerprint;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Rules compiled once. Plain rules match a substring of the link and are
+ * searched all at once by Aho-Corasick automaton. Rules with "glob:" prefix
+ * match the whole link: * matches anything except /, ** matches anything and
+ * ? matches a single character. Rules with "regex:" prefix match any part of
+ * the link.
+ *
+ * Every substring rule found in the link is counted. Glob and regex rules
+ * are evaluated in order only if no substring rule matched and the first
+ * matching one is counted.
+ */
+class ResourceRules {
+
+	static final String GLOB_PREFIX = "glob:";
+	static final String REGEX_PREFIX = "regex:";
+
+	private final List<Rule> rules = new ArrayList<>();
+	private final SubstringAutomaton substrings;
+	private final List<Rule> patternRules = new ArrayList<>();
+	private final List<Pattern> patterns = new ArrayList<>();
+
+	/**
+	 * @throws IllegalArgumentException if some regex is invalid
+	 */
+	ResourceRules(List<String> values) {
+		List<String> keywords = new ArrayList<>();
+		List<Rule> keywordRules = new ArrayList<>();
+		if (values != null) {
+			for (String cur : values) {
+				Rule rule = new Rule(cur);
+				rules.add(rule);
+				if (cur.startsWith(GLOB_PREFIX)) {
+					patternRules.add(rule);
+					patterns.add(compileGlob(cur.substring(GLOB_PREFIX.length())));
+				} else if (cur.startsWith(REGEX_PREFIX)) {
+					patternRules.add(rule);
+					patterns.add(Pattern.compile(cur.substring(REGEX_PREFIX.length())));
+				} else {
+					keywords.add(cur);
+					keywordRules.add(rule);
+				}
+			}
+		}
+		substrings = keywords.isEmpty() ? null : new SubstringAutomaton(keywords, keywordRules);
+	}
+
+	boolean isEmpty() {
+		return rules.isEmpty();
+	}
+
+	/**
+	 * Hits are not counted
+	 */
+	boolean matches(String link) {
+		return matches(link, false);
+	}
+
+	/**
+	 * @param count if true, hits of the matching rules are counted.
+	 *              Otherwise returns on the first one
+	 */
+	boolean matches(String link, boolean count) {
+		if (substrings != null && substrings.matches(link, count)) {
+			return true;
+		}
+		for (int i = 0; i < patterns.size(); i++) {
+			if (patterns.get(i).matcher(link).find()) {
+				if (count) {
+					patternRules.get(i).hits.increment();
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return rules in the declaration order
+	 */
+	List<Rule> getRules() {
+		return Collections.unmodifiableList(rules);
+	}
+
+	static class Rule {
+
+		final String rule;
+		private final LongAdder hits = new LongAdder();
+
+		Rule(String rule) {
+			this.rule = rule;
+		}
+
+		long getHits() {
+			return hits.sum();
+		}
+	}
+
+	static Pattern compileGlob(String glob) {
+		StringBuilder result = new StringBuilder("^");
+		int literal = 0;
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c != '*' && c != '?') {
+				continue;
+			}
+			if (literal < i) {
+				result.append(Pattern.quote(glob.substring(literal, i)));
+			}
+			if (c == '?') {
+				result.append('.');
+			} else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+				result.append(".*");
+				i++;
+			} else {
+				result.append("[^/]*");
+			}
+			literal = i + 1;
+		}
+		if (literal < glob.length()) {
+			result.append(Pattern.quote(glob.substring(literal)));
+		}
+		return Pattern.compile(result.append('$').toString(), Pattern.DOTALL);
+	}
+
+	// immutable once built, so could be shared between threads
+	private static class SubstringAutomaton {
+
+		private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+		private final List<List<Rule>> outputs = new ArrayList<>();
+		private final int[] failure;
+		// empty rule matches everything
+		private final List<Rule> empty = new ArrayList<>();
+
+		SubstringAutomaton(List<String> keywords, List<Rule> rules) {
+			addState();
+			for (int i = 0; i < keywords.size(); i++) {
+				if (keywords.get(i).isEmpty()) {
+					empty.add(rules.get(i));
+					continue;
+				}
+				int state = 0;
+				for (char c : keywords.get(i).toCharArray()) {
+					Integer next = transitions.get(state).get(c);
+					if (next == null) {
+						next = addState();
+						transitions.get(state).put(c, next);
+					}
+					state = next;
+				}
+				outputs.get(state).add(rules.get(i));
+			}
+			failure = new int[transitions.size()];
+			// breadth-first, so failure of the shorter suffix is known
+			Deque<Integer> queue = new ArrayDeque<>(transitions.get(0).values());
+			while (!queue.isEmpty()) {
+				int state = queue.poll();
+				for (Map.Entry<Character, Integer> cur : transitions.get(state).entrySet()) {
+					int next = cur.getValue();
+					int fallback = failure[state];
+					while (fallback != 0 && !transitions.get(fallback).containsKey(cur.getKey())) {
+						fallback = failure[fallback];
+					}
+					Integer target = transitions.get(fallback).get(cur.getKey());
+					failure[next] = target != null ? target : 0;
+					// keywords which are suffixes of this one
+					outputs.get(next).addAll(outputs.get(failure[next]));
+					queue.add(next);
+				}
+			}
+		}
+
+		private int addState() {
+			transitions.add(new HashMap<>());
+			outputs.add(new ArrayList<>());
+			return transitions.size() - 1;
+		}
+
+		/**
+		 * @param count if true, hits of all the rules found are counted.
+		 *              Otherwise returns on the first one
+		 */
+		boolean matches(String text, boolean count) {
+			if (!count && !empty.isEmpty()) {
+				return true;
+			}
+			List<Rule> found = new ArrayList<>(empty);
+			int state = 0;
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				Integer next;
+				while ((next = transitions.get(state).get(c)) == null && state != 0) {
+					state = failure[state];
+				}
+				state = next != null ? next : 0;
+				for (Rule cur : outputs.get(state)) {
+					if (!count) {
+						return true;
+					}
+					if (!found.contains(cur)) {
+						found.add(cur);
+					}
+				}
+			}
+			for (Rule cur : found) {
+				cur.hits.increment();
+			}
+			return !found.isEmpty();
+		}
+	}
+}
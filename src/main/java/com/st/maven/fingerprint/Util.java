@@ -1,17 +1,16 @@
 package com.st.maven.fingerprint;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.text.StringSubstitutor;
-import org.apache.maven.plugin.MojoExecutionException;
 
 class Util {
 
+	private static final String HASH_PREFIX = "hash:";
+
 	static String getExtension(String filename) {
 		int extensionIndex = filename.lastIndexOf('.');
 		if (extensionIndex == -1) {
@@ -24,13 +23,15 @@ class Util {
 		return file.getAbsolutePath().substring(sourceDirectory.getAbsolutePath().length());
 	}
 
-	static String generateTargetResourceFilename(File sourceFile, String sourceFilename, String namePattern) throws MojoExecutionException {
-		String fingerprint;
-		try (FileInputStream fis = new FileInputStream(sourceFile)) {
-			fingerprint = DigestUtils.md5Hex(fis);
-		} catch (Exception e1) {
-			throw new MojoExecutionException("unable to calculate md5 for file: " + sourceFile.getAbsolutePath(), e1);
+	static String normalize(File file) {
+		String result = FilenameUtils.normalize(file.getAbsolutePath());
+		if (result == null) {
+			return file.getAbsolutePath();
 		}
+		return result;
+	}
+
+	static String generateTargetResourceFilename(String fingerprint, String sourceFilename, String namePattern) {
 		String filename = FilenameUtils.getBaseName(sourceFilename);
 		String extension = FilenameUtils.getExtension(sourceFilename);
 
@@ -39,10 +40,30 @@ class Util {
 		values.put("hash", fingerprint);
 		values.put("ext", extension);
 
-		StringSubstitutor sub = new StringSubstitutor(values, "[", "]");
+		StringSubstitutor sub = new StringSubstitutor(key -> {
+			String result = values.get(key);
+			if (result == null && key.startsWith(HASH_PREFIX)) {
+				result = truncate(fingerprint, key.substring(HASH_PREFIX.length()));
+			}
+			return result;
+		}, "[", "]", StringSubstitutor.DEFAULT_ESCAPE);
 		return FilenameUtils.getFullPath(sourceFilename) + sub.replace(namePattern);
 	}
 
+	// [hash:8] is the first 8 characters of hash
+	private static String truncate(String fingerprint, String length) {
+		int maxLength;
+		try {
+			maxLength = Integer.parseInt(length);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		if (maxLength <= 0) {
+			return null;
+		}
+		return fingerprint.substring(0, Math.min(maxLength, fingerprint.length()));
+	}
+
 	private Util() {
 		// do nothing
 	}
@@ -0,0 +1,129 @@
+package com.st.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Generates optimized webapp and then updates it on every change in the
+ * source directory until interrupted. Files reported by the watch service,
+ * and the files referencing them, are processed again. Everything else,
+ * including the reference graph, is kept in memory from the previous
+ * execution. Outputs with the previous fingerprints are removed.
+ */
+@Mojo(name = "watch")
+public class WatchMojo extends FingerprintMojo {
+
+	/**
+	 * Changes made within this number of milliseconds are processed together
+	 */
+	@Parameter
+	private long watchDelay = 50;
+
+	private volatile WatchService watchService;
+
+	@Override
+	public void execute() throws MojoExecutionException {
+		startWatching();
+		Path source = getSourceDirectory().toPath();
+		try (WatchService service = FileSystems.getDefault().newWatchService()) {
+			watchService = service;
+			// changes made during the first execution are not lost
+			register(service, source);
+			super.execute();
+			getLog().info("watching for changes: " + getSourceDirectory().getAbsolutePath());
+			while (true) {
+				WatchKey key = service.take();
+				Set<File> changed = new HashSet<>();
+				while (key != null) {
+					if (!handle(service, key, changed)) {
+						changed = null;
+					}
+					key = service.poll(watchDelay, TimeUnit.MILLISECONDS);
+				}
+				long start = System.nanoTime();
+				try {
+					update(changed);
+				} catch (MojoExecutionException e) {
+					// fixed by the next change
+					getLog().error(e.getMessage(), e);
+					continue;
+				}
+				getLog().info("updated in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+			}
+		} catch (ClosedWatchServiceException e) {
+			getLog().info("stopped watching: " + getSourceDirectory().getAbsolutePath());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			throw new MojoExecutionException("unable to watch: " + getSourceDirectory().getAbsolutePath(), e);
+		}
+	}
+
+	void stop() throws IOException {
+		WatchService service = watchService;
+		if (service != null) {
+			service.close();
+		}
+	}
+
+	/**
+	 * @param changed created, modified and deleted files are added here
+	 * @return false if events were lost
+	 */
+	private boolean handle(WatchService service, WatchKey key, Set<File> changed) throws IOException {
+		Path directory = (Path) key.watchable();
+		boolean result = true;
+		for (WatchEvent<?> cur : key.pollEvents()) {
+			if (cur.kind() == StandardWatchEventKinds.OVERFLOW) {
+				result = false;
+				continue;
+			}
+			Path path = directory.resolve((Path) cur.context());
+			if (Files.isDirectory(path)) {
+				// contents of the existing directory are watched separately
+				if (cur.kind() != StandardWatchEventKinds.ENTRY_CREATE) {
+					continue;
+				}
+				register(service, path);
+			}
+			if (changed != null) {
+				changed.add(path.toFile());
+			}
+		}
+		key.reset();
+		return result;
+	}
+
+	private void register(WatchService service, Path root) throws IOException {
+		Path target = getTargetDirectory().toPath().toAbsolutePath().normalize();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				// target directory inside of the source directory
+				if (dir.toAbsolutePath().normalize().startsWith(target)) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
@@ -0,0 +1,111 @@
+package com.st.maven.fingerprint;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming implementation of xxHash64 with zero seed
+ */
+class XxHash64 implements DigestAlgorithm.Hasher {
+
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+	private static final int STRIPE = 32;
+
+	private long v1 = PRIME1 + PRIME2;
+	private long v2 = PRIME2;
+	private long v3 = 0;
+	private long v4 = -PRIME1;
+	private long totalLength = 0;
+	// incomplete stripe
+	private final ByteBuffer buffer = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+
+	@Override
+	public void update(byte[] data, int offset, int length) {
+		update(ByteBuffer.wrap(data, offset, length));
+	}
+
+	@Override
+	public void update(ByteBuffer data) {
+		ByteBuffer input = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+		totalLength += input.remaining();
+		data.position(data.limit());
+		if (buffer.position() > 0) {
+			while (buffer.hasRemaining() && input.hasRemaining()) {
+				buffer.put(input.get());
+			}
+			if (buffer.hasRemaining()) {
+				return;
+			}
+			buffer.flip();
+			processStripe(buffer);
+			buffer.clear();
+		}
+		while (input.remaining() >= STRIPE) {
+			processStripe(input);
+		}
+		buffer.put(input);
+	}
+
+	private void processStripe(ByteBuffer input) {
+		v1 = round(v1, input.getLong());
+		v2 = round(v2, input.getLong());
+		v3 = round(v3, input.getLong());
+		v4 = round(v4, input.getLong());
+	}
+
+	long getValue() {
+		long result;
+		if (totalLength >= STRIPE) {
+			result = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			result = mergeRound(result, v1);
+			result = mergeRound(result, v2);
+			result = mergeRound(result, v3);
+			result = mergeRound(result, v4);
+		} else {
+			result = PRIME5;
+		}
+		result += totalLength;
+
+		ByteBuffer remaining = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		remaining.flip();
+		while (remaining.remaining() >= 8) {
+			result ^= round(0, remaining.getLong());
+			result = Long.rotateLeft(result, 27) * PRIME1 + PRIME4;
+		}
+		if (remaining.remaining() >= 4) {
+			result ^= (remaining.getInt() & 0xFFFFFFFFL) * PRIME1;
+			result = Long.rotateLeft(result, 23) * PRIME2 + PRIME3;
+		}
+		while (remaining.hasRemaining()) {
+			result ^= (remaining.get() & 0xFF) * PRIME5;
+			result = Long.rotateLeft(result, 11) * PRIME1;
+		}
+
+		result ^= result >>> 33;
+		result *= PRIME2;
+		result ^= result >>> 29;
+		result *= PRIME3;
+		result ^= result >>> 32;
+		return result;
+	}
+
+	@Override
+	public String digest() {
+		return String.format("%016x", getValue());
+	}
+
+	private static long round(long acc, long input) {
+		acc += input * PRIME2;
+		acc = Long.rotateLeft(acc, 31);
+		return acc * PRIME1;
+	}
+
+	private static long mergeRound(long acc, long value) {
+		acc ^= round(0, value);
+		return acc * PRIME1 + PRIME4;
+	}
+}
@@ -0,0 +1,85 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArchiveWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testOrder() throws Exception {
+		File a = write("a.txt", "a");
+		File b = write("b.png", "b");
+		File c = write("c.txt", "c");
+		File archive = new File(folder.getRoot(), "out/test.zip");
+		ArchiveWriter writer = new ArchiveWriter(archive, ArchiveWriter.DEFAULT_TIMESTAMP, Arrays.asList("a", "b", "c"));
+		writer.start();
+		// submitted out of order
+		writer.submit("c", Collections.singletonList(new ArchiveWriter.Entry("c.txt", c)));
+		writer.submit("a", Arrays.asList(new ArchiveWriter.Entry("z/a.txt", a), new ArchiveWriter.Entry("a.txt", a)));
+		writer.finish(Collections.singletonList(new ArchiveWriter.Entry("bundle.txt", c)));
+		List<String> names = new ArrayList<>();
+		try (ZipFile zip = new ZipFile(archive)) {
+			for (ZipEntry cur : Collections.list(zip.entries())) {
+				names.add(cur.getName());
+			}
+		}
+		assertEquals(Arrays.asList("a.txt", "z/a.txt", "c.txt", "bundle.txt"), names);
+		assertFalse(b.getName(), names.contains(b.getName()));
+	}
+
+	@Test
+	public void testAbort() throws Exception {
+		File archive = new File(folder.getRoot(), "test.zip");
+		ArchiveWriter writer = new ArchiveWriter(archive, ArchiveWriter.DEFAULT_TIMESTAMP, Collections.singletonList("a"));
+		writer.start();
+		writer.abort();
+		assertFalse(archive.exists());
+		assertEquals(0, folder.getRoot().list().length);
+	}
+
+	@Test
+	public void testStored() {
+		assertTrue(ArchiveWriter.isStored("img/a.PNG"));
+		assertTrue(ArchiveWriter.isStored("css/a.css.gz"));
+		assertFalse(ArchiveWriter.isStored("css/a.css"));
+		assertFalse(ArchiveWriter.isStored("LICENSE"));
+	}
+
+	@Test
+	public void testParseTimestamp() {
+		assertEquals(ArchiveWriter.DEFAULT_TIMESTAMP, ArchiveWriter.parseTimestamp(null));
+		assertEquals(ArchiveWriter.DEFAULT_TIMESTAMP, ArchiveWriter.parseTimestamp("a"));
+		assertEquals(1700000000000L, ArchiveWriter.parseTimestamp("1700000000"));
+		assertEquals(1700000000000L, ArchiveWriter.parseTimestamp("2023-11-14T22:13:20Z"));
+		assertEquals(1700000000000L, ArchiveWriter.parseTimestamp("2023-11-15T00:13:20+02:00"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidTimestamp() {
+		ArchiveWriter.parseTimestamp("yesterday");
+	}
+
+	private File write(String name, String data) throws Exception {
+		File result = new File(folder.getRoot(), name);
+		Files.write(result.toPath(), data.getBytes(StandardCharsets.UTF_8));
+		return result;
+	}
+}
@@ -0,0 +1,52 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AssetManifestTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSaveLoad() throws Exception {
+		Map<String, AssetManifest.Asset> assets = new HashMap<>();
+		assets.put("/css/custom.css", new AssetManifest.Asset("/css/abcdcustom.css", "abcd", "ef01"));
+		assets.put("/img/\"quoted\" \\ name.png", new AssetManifest.Asset("/img/1234\"quoted\" \\ name.png", null, null));
+		File file = new File(folder.getRoot(), "manifest.json");
+		new AssetManifest("/target", "MD5", assets).save(file);
+
+		AssetManifest loaded = AssetManifest.load(file);
+		assertEquals("/target", loaded.getTargetDirectory());
+		assertEquals("/css/abcdcustom.css", loaded.resolve("/css/custom.css"));
+		assertEquals("abcd", loaded.getHash("/css/custom.css"));
+		assertEquals("MD5", loaded.getDigestAlgorithm());
+		assertEquals("ef01", loaded.getAssets().get("/css/custom.css").source);
+		assertEquals("/img/1234\"quoted\" \\ name.png", loaded.resolve("/img/\"quoted\" \\ name.png"));
+		assertNull(loaded.getHash("/img/\"quoted\" \\ name.png"));
+		assertNull(loaded.resolve("/unknown.css"));
+	}
+
+	@Test
+	public void testLoadFormatted() throws Exception {
+		String data = "{ \"assets\" : { \"/a.js\" : { \"source\" : \"ab\", \"unknown\": [1, true], \"path\" : \"/1a.js\" } },\n\t\"version\" : 1 }";
+		AssetManifest loaded = AssetManifest.load(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+		assertEquals("/1a.js", loaded.resolve("/a.js"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnsupportedVersion() throws Exception {
+		AssetManifest.load(new ByteArrayInputStream("{\"version\": 2, \"assets\": {}}".getBytes(StandardCharsets.UTF_8)));
+	}
+}
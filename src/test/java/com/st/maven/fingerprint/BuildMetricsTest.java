@@ -0,0 +1,62 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.st.maven.fingerprint.BuildMetrics.FileMetrics;
+import com.st.maven.fingerprint.BuildMetrics.Phase;
+
+public class BuildMetricsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReport() throws Exception {
+		BuildMetrics metrics = new BuildMetrics();
+		try (BuildMetrics.Timer timer = metrics.start(Phase.REWRITE)) {
+			metrics.linkHit();
+			metrics.linkMiss();
+		}
+		metrics.recordFile("/css/custom.css", "process", 100, 50, 2_000_000);
+		metrics.recordFile("/js/script.js", "process", 200, 100, 3_000_000);
+		metrics.recordFile("/img/img.png", "copy", 300, 300, 1_000_000);
+
+		List<FileMetrics> slowest = metrics.getSlowestFiles(2);
+		assertEquals(2, slowest.size());
+		assertEquals("/js/script.js", slowest.get(0).path);
+		assertEquals("/css/custom.css", slowest.get(1).path);
+
+		File csv = new File(folder.getRoot(), "metrics.csv");
+		metrics.save(csv);
+		List<String> lines = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+		assertEquals("type,name,count,wall_ms,cpu_ms,bytes_in,bytes_out", lines.get(0));
+		assertTrue(lines.contains("links,hit,1,,,,"));
+		assertTrue(lines.contains("copy,/img/img.png,1,1.000,,300,300"));
+		for (String cur : lines) {
+			assertEquals(cur, 7, cur.split(",", -1).length);
+		}
+
+		File json = new File(folder.getRoot(), "metrics.json");
+		metrics.save(json);
+		String report = new String(Files.readAllBytes(json.toPath()), StandardCharsets.UTF_8);
+		assertTrue(report.contains("{\"name\": \"rewrite\", \"count\": 1"));
+		assertTrue(report.contains("{\"path\": \"/css/custom.css\", \"action\": \"process\", \"wallMillis\": 2.000, \"bytesIn\": 100, \"bytesOut\": 50}"));
+	}
+
+	@Test
+	public void testDisabled() {
+		BuildMetrics.DISABLED.start(Phase.COPY).close();
+		BuildMetrics.DISABLED.recordFile("/img/img.png", "copy", 1, 1, 1);
+		assertTrue(BuildMetrics.DISABLED.getSlowestFiles(10).isEmpty());
+	}
+}
@@ -0,0 +1,61 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BundlerTest {
+
+	private final List<String> created = new ArrayList<>();
+
+	@Test
+	public void testAdjacent() throws Exception {
+		String data = "<head>\n<link rel='stylesheet' href='/css/a.css'>\n\t<link href=\"/css/b.css?v=1\" rel=\"stylesheet\" type=\"text/css\"/>\n" + "<script src='/js/a.js'></script> <script type=\"text/javascript\" src=\"/js/b.js\"></script>\n" + "<hr><script src='/js/c.js'></script><!-- comment --><script src='/js/d.js'></script>\n" + "<script src='/js/e.js' async></script><script src='/js/f.js'></script>\n" + "<script src='//cdn/g.js'></script><script src='/js/h.js'></script>\n</head>";
+		String expected = "<head>\n<link rel='stylesheet' href='/bundle0.css'>\n" + "<script src='/bundle1.js'></script>\n" + "<hr><script src='/js/c.js'></script><!-- comment --><script src='/js/d.js'></script>\n" + "<script src='/js/e.js' async></script><script src='/js/f.js'></script>\n" + "<script src='//cdn/g.js'></script><script src='/js/h.js'></script>\n</head>";
+		assertEquals(expected, new Bundler(true, null, new Handler()).apply(data));
+		assertEquals(Arrays.asList("STYLESHEET null [/css/a.css, /css/b.css?v=1]", "SCRIPT null [/js/a.js, /js/b.js]"), created);
+	}
+
+	@Test
+	public void testDeclared() throws Exception {
+		Bundle bundle = new Bundle("/js/app.js", Arrays.asList("/js/b.js", "/js/c.js"));
+		String data = "<script src='/js/a.js'></script><script src='/js/b.js'></script><script src='/js/c.js?v=2'></script><script src='/js/d.js'></script>";
+		assertEquals("<script src='/js/a.js'></script><script src='/bundle0.js'></script><script src='/js/d.js'></script>", new Bundler(false, Collections.singletonList(bundle), new Handler()).apply(data));
+		assertEquals(Collections.singletonList("SCRIPT /js/app.js [/js/b.js, /js/c.js?v=2]"), created);
+		// the rest of the run is bundled too. Single tag is left as is
+		created.clear();
+		assertEquals("<script src='/js/a.js'></script><script src='/bundle0.js'></script><script src='/bundle1.js'></script>", new Bundler(true, Collections.singletonList(bundle), new Handler()).apply(data + "<script src='/js/e.js'></script>"));
+		assertEquals(Arrays.asList("SCRIPT /js/app.js [/js/b.js, /js/c.js?v=2]", "SCRIPT null [/js/d.js, /js/e.js]"), created);
+	}
+
+	@Test
+	public void testNothingToBundle() throws Exception {
+		String data = "<link rel='icon' href='/a.png'><link rel='icon' href='/b.png'><script src='/js/a.js'></script>";
+		assertEquals(data, new Bundler(true, null, new Handler()).apply(data));
+	}
+
+	private class Handler implements Bundler.BundleHandler {
+
+		@Override
+		public String bundle(Bundler.Type type, String name, List<String> links) {
+			created.add(type + " " + name + " " + links);
+			return "/bundle" + (created.size() - 1) + type.getExtension();
+		}
+
+		@Override
+		public boolean isLocal(String link) {
+			return !link.startsWith("//");
+		}
+
+		@Override
+		public String getPath(String link) {
+			int index = link.indexOf('?');
+			return index == -1 ? link : link.substring(0, index);
+		}
+	}
+}
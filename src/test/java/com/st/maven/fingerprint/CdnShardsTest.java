@@ -0,0 +1,46 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class CdnShardsTest {
+
+	@Test
+	public void testShards() {
+		CdnShards shards = new CdnShards("//a.example.com, //b.example.com,,//a.example.com");
+		assertEquals(2, shards.size());
+		String first = shards.getHost("/css/a.css", "28633d3e930176d2da32156068f8a468");
+		// assigned once
+		assertEquals(first, shards.getHost("/css/a.css", "db70ac9dda4df0c72b756fbcf610edca"));
+		for (int i = 0; i < 100; i++) {
+			shards.getHost("/img/" + i + ".png", Integer.toHexString(i * 7919));
+		}
+		Map<String, Integer> distribution = shards.getDistribution();
+		assertEquals(2, distribution.size());
+		assertEquals(101, distribution.get("//a.example.com") + distribution.get("//b.example.com"));
+	}
+
+	@Test
+	public void testSingleHost() {
+		CdnShards shards = new CdnShards("//cdn.example.com");
+		assertEquals("//cdn.example.com", shards.getHost("/a.css", "1"));
+		Map<String, Integer> expected = new LinkedHashMap<>();
+		expected.put("//cdn.example.com", 1);
+		assertEquals(expected, shards.getDistribution());
+	}
+
+	@Test
+	public void testStable() {
+		assertEquals(CdnShards.getShard("28633d3e930176d2da32156068f8a468", 4), CdnShards.getShard("28633d3e930176d2da32156068f8a468", 4));
+		assertEquals(Math.floorMod("28633d3e930176d2da32156068f8a468".hashCode(), 3), CdnShards.getShard("28633d3e930176d2da32156068f8a468", 3));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmpty() {
+		new CdnShards(" , ");
+	}
+}
@@ -0,0 +1,91 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Test;
+
+public class CssImportFlattenerTest {
+
+	private final Map<String, String> files = new HashMap<>();
+	private final Map<String, Integer> reads = new HashMap<>();
+	private final CssImportFlattener flattener = new CssImportFlattener(new CssImportFlattener.ImportHandler() {
+
+		@Override
+		public String read(String path) {
+			reads.merge(path, 1, Integer::sum);
+			return files.get(path);
+		}
+
+		@Override
+		public boolean isLocal(String link) {
+			return !link.startsWith("//") && link.indexOf(':') == -1;
+		}
+	});
+
+	@Test
+	public void testFlatten() throws Exception {
+		files.put("/css/theme/base.css", "@charset \"UTF-8\";\n@import 'fonts.css';\n.a { background: url(../../img/a.png) }\n");
+		files.put("/css/theme/fonts.css", ".f { src: url(\"fonts/a.woff?v=1\"), url(/fonts/b.woff), url(data:font/woff;base64,AA==) }\n");
+		CssImportFlattener.Flattened result = flattener.flatten("/css/main.css", "@charset \"UTF-8\";\n@import url(\"theme/base.css\");\n.b { background: url(img/b.png) }\n");
+		assertEquals("@charset \"UTF-8\";\n\n.f { src: url(\"/css/theme/fonts/a.woff?v=1\"), url(/fonts/b.woff), url(data:font/woff;base64,AA==) }\n\n.a { background: url(/img/a.png) }\n\n.b { background: url(img/b.png) }\n", result.data);
+		assertTrue(result.complete);
+		assertEquals(Arrays.asList("/css/theme/base.css", "/css/theme/fonts.css"), Arrays.asList(result.imports.toArray()));
+	}
+
+	@Test
+	public void testSharedImportReadOnce() throws Exception {
+		files.put("/css/shared.css", ".s {}");
+		assertEquals(".s {}\n.a {}", flattener.flatten("/css/a.css", "@import \"shared.css\";\n.a {}").data);
+		assertEquals(".s {}\n.b {}", flattener.flatten("/css/b.css", "@import \"/css/shared.css\";\n.b {}").data);
+		assertEquals(Integer.valueOf(1), reads.get("/css/shared.css"));
+	}
+
+	@Test
+	public void testKeptImports() throws Exception {
+		files.put("/css/a.css", ".a {}");
+		// leading remote import is kept
+		CssImportFlattener.Flattened result = flattener.flatten("/css/main.css", "@import url(//fonts.example.com/font.css);\n@import \"a.css\";\n");
+		assertEquals("@import url(//fonts.example.com/font.css);\n.a {}\n", result.data);
+		assertFalse(result.complete);
+		// import after the flattened one would be ignored by browsers
+		String data = "@import \"a.css\";\n@import \"a.css\" print;\n";
+		result = flattener.flatten("/css/main.css", data);
+		assertEquals(data, result.data);
+		assertTrue(result.imports.isEmpty());
+		// stylesheet with kept imports is not inlined
+		files.put("/css/b.css", "@import \"missing.css\";\n.b {}");
+		data = "@import \"b.css\";\n";
+		assertEquals(data, flattener.flatten("/css/main.css", data).data);
+		// commented out
+		assertEquals("/* @import \"a.css\"; */.a {}", flattener.flatten("/css/main.css", "/* @import \"a.css\"; */@import \"a.css\";").data);
+	}
+
+	@Test
+	public void testCycle() throws Exception {
+		files.put("/css/a.css", "@import \"b.css\";");
+		files.put("/css/b.css", "@import \"a.css\";");
+		try {
+			flattener.flatten("/css/a.css", files.get("/css/a.css"));
+			fail("cycle expected");
+		} catch (MojoExecutionException e) {
+			assertEquals("circular @import: /css/a.css -> /css/b.css -> /css/a.css", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testResolve() {
+		assertEquals("/img/a.png", CssImportFlattener.resolve("/css/theme/a.css", "../../img/a.png"));
+		assertEquals("/css/theme/img/a.png", CssImportFlattener.resolve("/css/theme/a.css", "./img/a.png"));
+		assertEquals("/img/a.png", CssImportFlattener.resolve("/css/theme/a.css", "/img/a.png"));
+		assertNull(CssImportFlattener.resolve("/css/a.css", "../../a.png"));
+	}
+}
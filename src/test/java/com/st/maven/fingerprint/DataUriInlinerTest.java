@@ -0,0 +1,52 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DataUriInlinerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testMimeType() {
+		DataUriInliner inliner = new DataUriInliner(1024, 1024, DataUriInliner.DEFAULT_TYPES);
+		assertEquals("image/png", inliner.getMimeType("/img/a.PNG"));
+		assertEquals("image/svg+xml", inliner.getMimeType("/img/a.svg"));
+		assertNull(inliner.getMimeType("/fonts/a.woff2"));
+		assertNull(inliner.getMimeType("/img/noextension"));
+		assertEquals("font/woff2", new DataUriInliner(1024, 1024, Collections.singleton("font/woff2")).getMimeType("/fonts/a.woff2"));
+	}
+
+	@Test
+	public void testDataUri() throws Exception {
+		File file = folder.newFile("a.gif");
+		Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+		DataUriInliner inliner = new DataUriInliner(3, 1024, DataUriInliner.DEFAULT_TYPES);
+		String result = inliner.getDataUri(file, "image/gif");
+		assertEquals("data:image/gif;base64,AQID", result);
+		// encoded once
+		assertSame(result, inliner.getDataUri(file, "image/gif"));
+		assertNull(new DataUriInliner(2, 1024, DataUriInliner.DEFAULT_TYPES).getDataUri(file, "image/gif"));
+	}
+
+	@Test
+	public void testBudget() {
+		DataUriInliner.Budget budget = new DataUriInliner(1024, 10, DataUriInliner.DEFAULT_TYPES).newBudget();
+		assertTrue(budget.take("123456"));
+		assertFalse(budget.take("12345"));
+		assertTrue(budget.take("1234"));
+		assertFalse(budget.take("1"));
+	}
+}
@@ -0,0 +1,56 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileHasherTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testAlgorithms() throws Exception {
+		File file = new File("src/test/resources/dummy-file-for-testing.txt");
+		assertEquals("331afe01c54815562adc514c6b5eb561", new FileHasher(DigestAlgorithm.MD5).hash(file));
+		assertEquals("67d1d9383f543bdf8e52535c96f18ce252933065e72537bf628b60e96c9e1d9c", new FileHasher(DigestAlgorithm.SHA256).hash(file));
+		assertEquals("11bfd26b7ab2725c", new FileHasher(DigestAlgorithm.XXHASH64).hash(file));
+	}
+
+	@Test
+	public void testXxHash64() {
+		FileHasher hasher = new FileHasher(DigestAlgorithm.XXHASH64);
+		assertEquals("ef46db3751d8e999", hasher.hash(new byte[0]));
+		assertEquals("44bc2cf5ad770999", hasher.hash("abc".getBytes(StandardCharsets.US_ASCII)));
+		byte[] data = new byte[1000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i * 31 + 7);
+		}
+		assertEquals("99594f4828043d35", hasher.hash(data));
+		// the same in small chunks
+		XxHash64 streaming = new XxHash64();
+		for (int i = 0; i < data.length; i += 7) {
+			streaming.update(data, i, Math.min(7, data.length - i));
+		}
+		assertEquals("99594f4828043d35", streaming.digest());
+	}
+
+	@Test
+	public void testMappedFile() throws Exception {
+		byte[] data = new byte[3 * 1024 * 1024 + 17];
+		new Random(1).nextBytes(data);
+		File file = folder.newFile("big.bin");
+		Files.write(file.toPath(), data);
+		for (DigestAlgorithm cur : DigestAlgorithm.values()) {
+			FileHasher hasher = new FileHasher(cur);
+			assertEquals(hasher.hash(data), hasher.hash(file));
+		}
+	}
+}
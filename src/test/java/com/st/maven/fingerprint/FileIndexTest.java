@@ -0,0 +1,83 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileIndexTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testIndex() throws Exception {
+		File root = tempFolder.newFolder("webapp");
+		File css = new File(root, "css" + File.separator + "custom.css");
+		File img = new File(root, "css" + File.separator + "img" + File.separator + "test.png");
+		File html = new File(root, "index.html");
+		assertTrue(img.getParentFile().mkdirs());
+		assertTrue(new File(root, "empty").mkdir());
+		Files.write(css.toPath(), "body {}".getBytes(StandardCharsets.UTF_8));
+		Files.write(img.toPath(), new byte[] { 1, 2, 3 });
+		Files.write(html.toPath(), "<html></html>".getBytes(StandardCharsets.UTF_8));
+
+		FileIndex index = FileIndex.create(root);
+		List<String> files = index.getFiles().stream().map(o -> o.relativePath).collect(Collectors.toList());
+		assertEquals(Arrays.asList(relative("css", "custom.css"), relative("css", "img", "test.png"), relative("index.html")), files);
+		assertEquals(Arrays.asList(relative("css"), relative("css", "img"), relative("empty")), index.getDirectories());
+
+		FileIndex.Entry entry = index.get(Util.normalize(img));
+		assertNotNull(entry);
+		assertEquals(3, entry.size);
+		assertEquals(img.lastModified(), entry.lastModified);
+		assertNull(index.get(Util.normalize(new File(root, "missing.png"))));
+		assertNull(index.get(Util.normalize(new File(root, "css"))));
+	}
+
+	@Test
+	public void testUpdate() throws Exception {
+		File root = tempFolder.newFolder("webapp");
+		File css = new File(root, "css" + File.separator + "custom.css");
+		File html = new File(root, "index.html");
+		assertTrue(css.getParentFile().mkdirs());
+		Files.write(css.toPath(), "body {}".getBytes(StandardCharsets.UTF_8));
+		Files.write(html.toPath(), "<html></html>".getBytes(StandardCharsets.UTF_8));
+		FileIndex index = FileIndex.create(root);
+
+		File js = new File(root, "css" + File.separator + "script.js");
+		Files.write(js.toPath(), new byte[] { 1 });
+		assertTrue(index.update(js));
+		Files.write(css.toPath(), "body { color: red; }".getBytes(StandardCharsets.UTF_8));
+		assertTrue(index.update(css));
+		assertTrue(html.delete());
+		assertTrue(index.update(html));
+
+		List<String> files = index.getFiles().stream().map(o -> o.relativePath).collect(Collectors.toList());
+		assertEquals(Arrays.asList(relative("css", "custom.css"), relative("css", "script.js")), files);
+		assertEquals(20, index.get(Util.normalize(css)).size);
+		assertNull(index.get(Util.normalize(html)));
+
+		assertFalse(index.update(css.getParentFile()));
+		assertTrue(js.delete());
+		assertTrue(css.delete());
+		assertTrue(css.getParentFile().delete());
+		assertFalse(index.update(css.getParentFile()));
+	}
+
+	private static String relative(String... parts) {
+		return File.separator + String.join(File.separator, parts);
+	}
+}
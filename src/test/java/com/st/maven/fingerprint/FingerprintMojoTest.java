@@ -2,6 +2,8 @@ package com.st.maven.fingerprint;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.BufferedInputStream;
@@ -9,7 +11,24 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.maven.plugin.Mojo;
 import org.apache.maven.plugin.testing.MojoRule;
@@ -34,6 +53,525 @@ public class FingerprintMojoTest {
 		assertFiles(new File("src/test/resources/expectedSuccess"), new File(folder.getRoot(), "optimized-webapp"));
 	}
 
+	@Test
+	public void testSingleThread() throws Exception {
+		MavenProject mavenProject = loadSuccessProject();
+		Mojo mm = mrule.lookupConfiguredMojo(mavenProject, "generate");
+		mrule.setVariableValueToObject(mm, "threads", 1);
+		mm.execute();
+		assertFiles(new File("src/test/resources/expectedSuccess"), new File(folder.getRoot(), "optimized-webapp"));
+	}
+
+	@Test
+	public void testCopyStrategies() throws Exception {
+		File image = new File("src/test/resources/success/src/main/webapp/img/img.png");
+		for (CopyStrategy cur : CopyStrategy.values()) {
+			File output = new File(folder.getRoot(), cur.name());
+			Mojo mm = mrule.lookupConfiguredMojo(loadSuccessProject(), "generate");
+			mrule.setVariableValueToObject(mm, "targetDirectory", output);
+			mrule.setVariableValueToObject(mm, "copyStrategy", cur);
+			mm.execute();
+			assertFiles(new File("src/test/resources/expectedSuccess"), output);
+			assertEquals(image.lastModified(), new File(output, "img/db70ac9dda4df0c72b756fbcf610edcaimg.png").lastModified());
+		}
+	}
+
+	@Test
+	public void testPrecompress() throws Exception {
+		File output = new File(folder.getRoot(), "optimized-webapp");
+		Mojo mm = mrule.lookupConfiguredMojo(loadSuccessProject(), "generate");
+		mrule.setVariableValueToObject(mm, "precompress", EnumSet.allOf(Compression.class));
+		mrule.setVariableValueToObject(mm, "precompressThreshold", 0);
+		mm.execute();
+		File css = new File(output, "css/28633d3e930176d2da32156068f8a468custom.css");
+		byte[] expected = Files.readAllBytes(css.toPath());
+		try (InputStream is = new GZIPInputStream(new FileInputStream(new File(css.getPath() + ".gz")))) {
+			assertArrayEquals(expected, IOUtils.toByteArray(is));
+		}
+		try (InputStream is = new InflaterInputStream(new FileInputStream(new File(css.getPath() + ".deflate")), new Inflater(true))) {
+			assertArrayEquals(expected, IOUtils.toByteArray(is));
+		}
+		assertFalse(new File(output, "css/custom.css.gz").exists());
+		// resources which are not processed are not compressed
+		assertFalse(new File(output, "img/db70ac9dda4df0c72b756fbcf610edcaimg.png.gz").exists());
+
+		mrule.setVariableValueToObject(mm, "precompressThreshold", Integer.MAX_VALUE);
+		mm.execute();
+		assertFiles(new File("src/test/resources/expectedSuccess"), output);
+	}
+
+	@Test
+	public void testStreaming() throws Exception {
+		File output = new File(folder.getRoot(), "optimized-webapp");
+		Mojo mm = mrule.lookupConfiguredMojo(loadSuccessProject(), "generate");
+		mrule.setVariableValueToObject(mm, "streamingThreshold", 0L);
+		mm.execute();
+		assertFiles(new File("src/test/resources/expectedSuccess"), output);
+
+		mrule.setVariableValueToObject(mm, "precompress", EnumSet.of(Compression.GZIP));
+		mrule.setVariableValueToObject(mm, "precompressThreshold", 0);
+		mm.execute();
+		File html = new File(output, "index.html");
+		try (InputStream is = new GZIPInputStream(new FileInputStream(new File(html.getPath() + ".gz")))) {
+			assertArrayEquals(Files.readAllBytes(html.toPath()), IOUtils.toByteArray(is));
+		}
+	}
+
+	@Test
+	public void testMinificationCache() throws Exception {
+		File cache = new File(folder.getRoot(), "cache");
+		for (int i = 0; i < 2; i++) {
+			Mojo mm = mrule.lookupConfiguredMojo(loadSuccessProject(), "generate");
+			mrule.setVariableValueToObject(mm, "minificationCacheDirectory", cache);
+			mm.execute();
+			assertFiles(new File("src/test/resources/expectedSuccess"), new File(folder.getRoot(), "optimized-webapp"));
+		}
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		File report = new File(folder.getRoot(), "metrics.csv");
+		Mojo mm = mrule.lookupConfiguredMojo(loadSuccessProject(), "generate");
+		mrule.setVariableValueToObject(mm, "metrics", true);
+		mrule.setVariableValueToObject(mm, "metricsReport", report);
+		mm.execute();
+		assertFiles(new File("src/test/resources/expectedSuccess"), new File(folder.getRoot(), "optimized-webapp"));
+		String data = read(report);
+		assertTrue(data.contains("phase,minify_css,1,"));
+		assertTrue(data.contains("process," + File.separator + "css" + File.separator + "custom.css,"));
+		assertTrue(data.contains("copy," + File.separator + "img" + File.separator + "img.png,"));
+	}
+
+	@Test
+	public void testManifest() throws Exception {
+		File manifest = new File(folder.getRoot(), "manifest.json");
+		Mojo mm = mrule.lookupConfiguredMojo(loadSuccessProject(), "generate");
+		mrule.setVariableValueToObject(mm, "manifestFile", manifest);
+		mm.execute();
+		AssetManifest loaded = AssetManifest.load(manifest);
+		assertEquals("/css/28633d3e930176d2da32156068f8a468custom.css", loaded.resolve("/css/custom.css"));
+		assertEquals("28633d3e930176d2da32156068f8a468", loaded.getHash("/css/custom.css"));
+
+		// resources processed upstream are copied
+		File output = new File(folder.getRoot(), "downstream");
+		File report = new File(folder.getRoot(), "metrics.csv");
+		mm = mrule.lookupConfiguredMojo(loadSuccessProject(), "generate");
+		mrule.setVariableValueToObject(mm, "targetDirectory", output);
+		mrule.setVariableValueToObject(mm, "importManifests", Collections.singletonList(manifest));
+		mrule.setVariableValueToObject(mm, "metrics", true);
+		mrule.setVariableValueToObject(mm, "metricsReport", report);
+		mm.execute();
+		assertFiles(new File("src/test/resources/expectedSuccess"), output);
+		String data = read(report);
+		assertTrue(data.contains("phase,minify_css,0,"));
+		assertTrue(data.contains("phase,minify_js,0,"));
+	}
+
+	@Test
+	public void testManifestOverridden() throws Exception {
+		File manifest = new File(folder.getRoot(), "manifest.json");
+		Mojo mm = mrule.lookupConfiguredMojo(loadSuccessProject(), "generate");
+		mrule.setVariableValueToObject(mm, "manifestFile", manifest);
+		mm.execute();
+
+		// edit of the same size
+		File webapp = copyWebapp();
+		File css = new File(webapp, "css/custom.css");
+		String data = read(css);
+		write(css, data.replace("font-weight: normal", "font-weight: bolder"));
+		assertEquals(data.length(), read(css).length());
+		File output = new File(folder.getRoot(), "downstream");
+		mm = newMojo(webapp);
+		mrule.setVariableValueToObject(mm, "targetDirectory", output);
+		mrule.setVariableValueToObject(mm, "importManifests", Collections.singletonList(manifest));
+		mm.execute();
+		assertFalse(new File(output, "css/28633d3e930176d2da32156068f8a468custom.css").exists());
+		assertTrue(read(new File(output, "index.html")).contains("custom.css"));
+		assertFalse(read(new File(output, "index.html")).contains("28633d3e930176d2da32156068f8a468custom.css"));
+	}
+
+	@Test
+	public void testBundle() throws Exception {
+		File webapp = copyWebapp();
+		write(new File(webapp, "page.html"), "<script src=\"/js/script.js\"></script>\n<script src=\"/js/script.min.js\"></script>");
+		File output = new File(folder.getRoot(), "optimized-webapp");
+		Mojo mm = newMojo(webapp);
+		mrule.setVariableValueToObject(mm, "bundleAdjacent", true);
+		mm.execute();
+		String index = read(new File(output, "index.html"));
+		Matcher m = Pattern.compile("src=\"(/bundle/[^\"]+)\"").matcher(index);
+		assertTrue(m.find());
+		String bundle = m.group(1);
+		assertFalse(m.find());
+		File expected = new File("src/test/resources/expectedSuccess/js");
+		String script = read(new File(expected, "31e859b9ce46f6f2f288ee2a02da956dscript.js"));
+		String minified = read(new File(expected, "5c4af561d61f0f3bd7e96c63c51e2e54script.min.js"));
+		assertEquals(script + ";\n" + minified, read(new File(output, bundle)));
+		// the same bundle is reused
+		String page = read(new File(output, "page.html"));
+		assertEquals("<script src=\"" + bundle + "\"></script>", page);
+		assertEquals(1, new File(output, "bundle").list().length);
+	}
+
+	@Test
+	public void testBundleStylesheets() throws Exception {
+		File webapp = copyWebapp();
+		write(new File(webapp, "css/a.css"), "@charset \"UTF-8\";\n.a { background: url(../img/img.png) }");
+		write(new File(webapp, "css/b.css"), "@charset \"UTF-8\";\n.b { background: url('b.png') }");
+		write(new File(webapp, "css/c.css"), "@import url(//example.com/c.css);\n.c { color: red }");
+		write(new File(webapp, "page.html"), "<link rel=\"stylesheet\" href=\"/css/a.css\">\n<link rel=\"stylesheet\" href=\"/css/b.css\">");
+		write(new File(webapp, "other.html"), "<link rel=\"stylesheet\" href=\"/css/a.css\">\n<link rel=\"stylesheet\" href=\"/css/c.css\">");
+		File output = new File(folder.getRoot(), "optimized-webapp");
+		Mojo mm = newMojo(webapp);
+		mrule.setVariableValueToObject(mm, "bundleAdjacent", true);
+		mm.execute();
+		Matcher m = Pattern.compile("href=\"(/bundle/[^\"]+)\"").matcher(read(new File(output, "page.html")));
+		assertTrue(m.find());
+		String bundle = read(new File(output, m.group(1)));
+		// relative urls are rebased to absolute paths, so they work from the bundle directory
+		assertTrue(bundle.contains("url(/img/img.png)"));
+		assertTrue(bundle.contains("url('/css/b.png')"));
+		assertEquals(bundle.indexOf("@charset"), bundle.lastIndexOf("@charset"));
+		// @import is valid only at the beginning
+		assertFalse(read(new File(output, "other.html")).contains("/bundle/"));
+	}
+
+	@Test
+	public void testDeduplicationLink() throws Exception {
+		File output = executeDeduplication(Deduplication.LINK);
+		assertTrue(Files.isSameFile(new File(output, "img/db70ac9dda4df0c72b756fbcf610edcaimg.png").toPath(), new File(output, "vendor/img.png").toPath()));
+		assertTrue(Files.isSameFile(new File(output, "js/31e859b9ce46f6f2f288ee2a02da956dscript.js").toPath(), new File(output, "vendor/script.js").toPath()));
+		assertEquals(2, new File(output, "vendor").list().length);
+	}
+
+	@Test
+	public void testDeduplicationOmit() throws Exception {
+		File output = executeDeduplication(Deduplication.OMIT);
+		assertEquals(0, new File(output, "vendor").list().length);
+	}
+
+	private File executeDeduplication(Deduplication deduplication) throws Exception {
+		File webapp = copyWebapp();
+		FileUtils.copyFile(new File(webapp, "img/img.png"), new File(webapp, "vendor/img.png"));
+		FileUtils.copyFile(new File(webapp, "js/script.js"), new File(webapp, "vendor/script.js"));
+		write(new File(webapp, "page.html"), "<img src=\"/vendor/img.png\" alt=\"\"><script src=\"/vendor/script.js\"></script>");
+		File output = new File(folder.getRoot(), "optimized-webapp");
+		Mojo mm = newMojo(webapp);
+		mrule.setVariableValueToObject(mm, "deduplication", deduplication);
+		mm.execute();
+		// references are rewritten to the canonical resources
+		String page = read(new File(output, "page.html"));
+		assertEquals("<img src=\"/img/db70ac9dda4df0c72b756fbcf610edcaimg.png\" alt=\"\"><script src=\"/js/31e859b9ce46f6f2f288ee2a02da956dscript.js\"></script>", page);
+		assertBinaryFilesEqual(new File("src/test/resources/expectedSuccess/js/31e859b9ce46f6f2f288ee2a02da956dscript.js"), new File(output, "js/31e859b9ce46f6f2f288ee2a02da956dscript.js"));
+		return output;
+	}
+
+	@Test
+	public void testArchive() throws Exception {
+		File expected = new File("src/test/resources/expectedSuccess");
+		File archive = new File(folder.getRoot(), "webapp.war");
+		Mojo mm = mrule.lookupConfiguredMojo(loadSuccessProject(), "generate");
+		mrule.setVariableValueToObject(mm, "archiveFile", archive);
+		mm.execute();
+		byte[] first = Files.readAllBytes(archive.toPath());
+		int entries = 0;
+		try (ZipFile zip = new ZipFile(archive)) {
+			for (ZipEntry cur : Collections.list(zip.entries())) {
+				entries++;
+				try (InputStream is = zip.getInputStream(cur)) {
+					assertArrayEquals(cur.getName(), Files.readAllBytes(new File(expected, cur.getName()).toPath()), IOUtils.toByteArray(is));
+				}
+				assertEquals(cur.getName().endsWith(".png") ? ZipEntry.STORED : ZipEntry.DEFLATED, cur.getMethod());
+			}
+			assertEquals(ArchiveWriter.DEFAULT_TIMESTAMP, zip.getEntry("index.html").getLastModifiedTime().toMillis() + TimeZone.getDefault().getOffset(ArchiveWriter.DEFAULT_TIMESTAMP));
+		}
+		assertEquals(FileUtils.listFiles(expected, null, true).size(), entries);
+		// resources which are not processed are not copied
+		assertFalse(new File(folder.getRoot(), "optimized-webapp/img/db70ac9dda4df0c72b756fbcf610edcaimg.png").exists());
+
+		FileUtils.deleteDirectory(new File(folder.getRoot(), "optimized-webapp"));
+		mm.execute();
+		assertArrayEquals(first, Files.readAllBytes(archive.toPath()));
+	}
+
+	@Test
+	public void testPreload() throws Exception {
+		File webapp = copyWebapp();
+		write(new File(webapp, "page.html"), "<html><head><link rel=\"stylesheet\" href=\"/css/custom.css\"></head><body><script type=\"module\" src=\"/js/script.js\"></script><img src=\"/img/img.png\" alt=\"\"></body></html>");
+		File headers = new File(folder.getRoot(), "preload.conf");
+		File output = new File(folder.getRoot(), "optimized-webapp");
+		Mojo mm = newMojo(webapp);
+		mrule.setVariableValueToObject(mm, "preload", EnumSet.of(PreloadType.STYLE, PreloadType.SCRIPT, PreloadType.FONT));
+		mrule.setVariableValueToObject(mm, "preloadHeadersFile", headers);
+		mm.execute();
+		String page = read(new File(output, "page.html"));
+		String hints = "<link rel=\"preload\" href=\"/css/28633d3e930176d2da32156068f8a468custom.css\" as=\"style\"><link rel=\"preload\" href=\"/css/fonts/c9cb7881b2b420eea33ec6847bcadaf1not_a_font.eot?v=4.5.0\" as=\"font\" crossorigin><link rel=\"modulepreload\" href=\"/js/31e859b9ce46f6f2f288ee2a02da956dscript.js\">";
+		assertTrue(page, page.startsWith("<html><head>" + hints + "<link rel=\"stylesheet\""));
+		String map = read(headers);
+		assertTrue(map, map.contains("\t\"/page.html\" \"</css/28633d3e930176d2da32156068f8a468custom.css>; rel=preload; as=style, </css/fonts/c9cb7881b2b420eea33ec6847bcadaf1not_a_font.eot?v=4.5.0>; rel=preload; as=font; crossorigin, </js/31e859b9ce46f6f2f288ee2a02da956dscript.js>; rel=modulepreload\";\n"));
+	}
+
+	@Test
+	public void testCdnShards() throws Exception {
+		File output = new File(folder.getRoot(), "optimized-webapp");
+		Mojo mm = mrule.lookupConfiguredMojo(loadSuccessProject(), "generate");
+		mrule.setVariableValueToObject(mm, "cdn", "//a.example.com,//b.example.com");
+		mm.execute();
+		String[] hosts = { "//a.example.com", "//b.example.com" };
+		// stylesheet references the image on cdn
+		String cssName = findFingerprinted(new File(output, "css"), "custom.css");
+		int cssShard = CdnShards.getShard(cssName.substring(0, 32), 2);
+		String css = hosts[cssShard] + "/css/" + cssName;
+		String image = hosts[CdnShards.getShard("db70ac9dda4df0c72b756fbcf610edca", 2)] + "/img/db70ac9dda4df0c72b756fbcf610edcaimg.png";
+		assertTrue(read(new File(output, "css/" + cssName)).contains("url(" + image + ")"));
+		String index = read(new File(output, "index.html"));
+		assertTrue(index.contains(css));
+		// every link to the resource uses the same host
+		assertFalse(Pattern.compile(Pattern.quote(hosts[1 - cssShard]) + "[^\"']*custom\\.css").matcher(index).find());
+		assertTrue(index.contains(image));
+	}
+
+	@Test
+	public void testPruneUnreferenced() throws Exception {
+		File webapp = copyWebapp();
+		FileUtils.copyFile(new File(webapp, "img/img.png"), new File(webapp, "img/unused.png"));
+		FileUtils.copyFile(new File(webapp, "js/script.js"), new File(webapp, "js/unused.js"));
+		write(new File(webapp, "js/dynamic.js"), "var a = 1;");
+		File report = new File(folder.getRoot(), "pruned.txt");
+		File output = new File(folder.getRoot(), "optimized-webapp");
+		Mojo mm = newMojo(webapp);
+		mrule.setVariableValueToObject(mm, "pruneUnreferenced", true);
+		mrule.setVariableValueToObject(mm, "keepResources", Collections.singletonList("glob:/js/dynamic.js"));
+		mrule.setVariableValueToObject(mm, "pruneReport", report);
+		mm.execute();
+		File dynamic = new File(output, "js/dynamic.js");
+		assertEquals("var a=1;", read(dynamic));
+		assertTrue(dynamic.delete());
+		assertFiles(new File("src/test/resources/expectedSuccess"), output);
+		long image = new File(webapp, "img/unused.png").length();
+		long script = new File(webapp, "js/unused.js").length();
+		assertEquals("# files: 2 bytes: " + (image + script) + "\n/img/unused.png\t" + image + "\n/js/unused.js\t" + script + "\n", read(report));
+	}
+
+	@Test
+	public void testInline() throws Exception {
+		File output = new File(folder.getRoot(), "optimized-webapp");
+		Mojo mm = mrule.lookupConfiguredMojo(loadSuccessProject(), "generate");
+		mrule.setVariableValueToObject(mm, "inlineMaxSize", 8192L);
+		mm.execute();
+		String css = read(new File(output, "css/" + findFingerprinted(new File(output, "css"), "custom.css")));
+		byte[] image = Files.readAllBytes(new File("src/test/resources/success/src/main/webapp/img/img.png").toPath());
+		assertTrue(css.contains("url(data:image/png;base64," + Base64.getEncoder().encodeToString(image) + ")"));
+		// fonts are not inlined by default, but still fingerprinted
+		assertTrue(css.contains("url('/css/fonts/c9cb7881b2b420eea33ec6847bcadaf1not_a_font.eot?v=4.5.0')"));
+		// html still references the image
+		String index = read(new File(output, "index.html"));
+		assertTrue(index.contains("/img/db70ac9dda4df0c72b756fbcf610edcaimg.png"));
+	}
+
+	@Test
+	public void testFlattenCssImports() throws Exception {
+		File webapp = copyWebapp();
+		File theme = new File(webapp, "css/theme");
+		assertTrue(theme.mkdirs());
+		write(new File(theme, "base.css"), ".base {\n\tbackground: url(../../img/img.png);\n}\n");
+		write(new File(webapp, "css/main.css"), "@import \"theme/base.css\";\n.main {\n\tfloat: left;\n}\n");
+		write(new File(webapp, "page.html"), "<link rel=\"stylesheet\" href=\"/css/main.css\">");
+		File output = new File(folder.getRoot(), "optimized-webapp");
+		Mojo mm = newMojo(webapp);
+		mrule.setVariableValueToObject(mm, "flattenCssImports", true);
+		mm.execute();
+		String css = read(new File(output, "css/" + findFingerprinted(new File(output, "css"), "main.css")));
+		assertEquals(".base{background:url(/img/db70ac9dda4df0c72b756fbcf610edcaimg.png)}.main{float:left}", css);
+	}
+
+	private static String findFingerprinted(File dir, String name) {
+		for (String cur : dir.list()) {
+			if (cur.endsWith(name) && cur.length() == name.length() + 32) {
+				return cur;
+			}
+		}
+		throw new AssertionError("not found: " + name);
+	}
+
+	@Test
+	public void testIncremental() throws Exception {
+		File webapp = copyWebapp();
+		File expected = new File("src/test/resources/expectedSuccess");
+		File output = new File(folder.getRoot(), "optimized-webapp");
+		executeIncremental(webapp);
+		assertFiles(expected, output);
+		executeIncremental(webapp);
+		assertFiles(expected, output);
+
+		File image = new File(webapp, "img/img.png");
+		byte[] changed = Files.readAllBytes(image.toPath());
+		changed[changed.length - 1]++;
+		Files.write(image.toPath(), changed);
+		assertTrue(image.setLastModified(image.lastModified() + 10000));
+		executeIncremental(webapp);
+
+		String fingerprinted = DigestUtils.md5Hex(changed) + "img.png";
+		assertFalse(new File(output, "img/db70ac9dda4df0c72b756fbcf610edcaimg.png").exists());
+		assertTrue(new File(output, "img/" + fingerprinted).exists());
+		String index = read(new File(output, "index.html"));
+		assertTrue(index.contains("/img/" + fingerprinted));
+		// stylesheet references the image
+		assertFalse(new File(output, "css/28633d3e930176d2da32156068f8a468custom.css").exists());
+		// unchanged resources are still there
+		assertBinaryFilesEqual(new File(expected, "js/31e859b9ce46f6f2f288ee2a02da956dscript.js"), new File(output, "js/31e859b9ce46f6f2f288ee2a02da956dscript.js"));
+	}
+
+	@Test
+	public void testUpdate() throws Exception {
+		File webapp = copyWebapp();
+		write(new File(webapp, "css/other.css"), ".other {}");
+		File output = new File(folder.getRoot(), "optimized-webapp");
+		FingerprintMojo mm = (FingerprintMojo) newMojo(webapp);
+		mm.startWatching();
+		mm.execute();
+		assertTrue(new File(output, "css/other.css").isFile());
+
+		// unaffected outputs are not checked again
+		File script = new File(output, "js/31e859b9ce46f6f2f288ee2a02da956dscript.js");
+		assertTrue(script.delete());
+		File image = new File(webapp, "img/img.png");
+		byte[] changed = Files.readAllBytes(image.toPath());
+		changed[changed.length - 1]++;
+		Files.write(image.toPath(), changed);
+		assertTrue(image.setLastModified(image.lastModified() + 10000));
+		mm.update(Collections.singleton(image));
+		String fingerprinted = DigestUtils.md5Hex(changed) + "img.png";
+		assertFalse(new File(output, "img/db70ac9dda4df0c72b756fbcf610edcaimg.png").exists());
+		assertTrue(new File(output, "img/" + fingerprinted).exists());
+		assertTrue(read(new File(output, "index.html")).contains("/img/" + fingerprinted));
+		assertFalse(new File(output, "css/28633d3e930176d2da32156068f8a468custom.css").exists());
+		assertFalse(script.exists());
+
+		// stylesheet referenced for the first time is fingerprinted
+		File page = new File(webapp, "page.html");
+		write(page, "<link rel=\"stylesheet\" href=\"/css/other.css\">");
+		mm.update(Collections.singleton(page));
+		// empty rule is removed by the minifier
+		String stylesheet = "/css/" + DigestUtils.md5Hex("") + "other.css";
+		assertEquals("<link rel=\"stylesheet\" href=\"" + stylesheet + "\">", read(new File(output, "page.html")));
+		assertTrue(new File(output, stylesheet).isFile());
+		assertFalse(new File(output, "css/other.css").exists());
+
+		assertTrue(page.delete());
+		mm.update(Collections.singleton(page));
+		assertFalse(new File(output, "page.html").exists());
+	}
+
+	@Test
+	public void testIncrementalBundle() throws Exception {
+		File webapp = copyWebapp();
+		write(new File(webapp, "page.html"), "<script src=\"/js/script.js\"></script>\n<script src=\"/js/script.min.js\"></script>");
+		File output = new File(folder.getRoot(), "optimized-webapp");
+		File bundleDirectory = new File(output, "bundle");
+		executeIncrementalBundle(webapp);
+		String[] bundles = bundleDirectory.list();
+		assertEquals(1, bundles.length);
+
+		// unchanged page with the bundle is skipped
+		File page = new File(output, "page.html");
+		write(page, "skipped");
+		executeIncrementalBundle(webapp);
+		assertEquals("skipped", read(page));
+		assertArrayEquals(bundles, bundleDirectory.list());
+
+		// bundle of the previous build is removed
+		File script = new File(webapp, "js/script.js");
+		write(script, "function changed() {}");
+		assertTrue(script.setLastModified(script.lastModified() + 10000));
+		executeIncrementalBundle(webapp);
+		assertEquals(1, bundleDirectory.list().length);
+		assertFalse(new File(bundleDirectory, bundles[0]).exists());
+		assertTrue(read(page).contains("/bundle/" + bundleDirectory.list()[0]));
+	}
+
+	@Test(timeout = 60000)
+	public void testWatch() throws Exception {
+		File webapp = copyWebapp();
+		File output = new File(folder.getRoot(), "optimized-webapp");
+		WatchMojo mm = (WatchMojo) newMojo(webapp, "watch");
+		AtomicReference<Exception> failure = new AtomicReference<>();
+		Thread thread = new Thread(() -> {
+			try {
+				mm.execute();
+			} catch (Exception e) {
+				failure.set(e);
+			}
+		});
+		thread.start();
+		try {
+			File index = new File(output, "index.html");
+			File image = new File(output, "img/db70ac9dda4df0c72b756fbcf610edcaimg.png");
+			waitFor(() -> image.isFile() && read(index).contains("/img/db70ac9dda4df0c72b756fbcf610edcaimg.png"));
+
+			File source = new File(webapp, "img/img.png");
+			byte[] changed = Files.readAllBytes(source.toPath());
+			changed[changed.length - 1]++;
+			Files.write(source.toPath(), changed);
+			String fingerprinted = "/img/" + DigestUtils.md5Hex(changed) + "img.png";
+			waitFor(() -> read(index).contains(fingerprinted) && !image.exists());
+			assertTrue(new File(output, fingerprinted).isFile());
+		} finally {
+			mm.stop();
+			thread.join();
+		}
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+	}
+
+	private static void waitFor(Callable<Boolean> condition) throws Exception {
+		while (!condition.call()) {
+			Thread.sleep(20);
+		}
+	}
+
+	private static String read(File file) throws IOException {
+		if (!file.isFile()) {
+			return "";
+		}
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	// copy of the success webapp which could be modified by the test
+	private File copyWebapp() throws IOException {
+		File result = new File(folder.getRoot(), "webapp");
+		FileUtils.copyDirectory(new File("src/test/resources/success/src/main/webapp"), result);
+		return result;
+	}
+
+	private Mojo newMojo(File webapp) throws Exception {
+		return newMojo(webapp, "generate");
+	}
+
+	private Mojo newMojo(File webapp, String goal) throws Exception {
+		Mojo result = mrule.lookupConfiguredMojo(loadSuccessProject(), goal);
+		mrule.setVariableValueToObject(result, "sourceDirectory", webapp);
+		return result;
+	}
+
+	private static void write(File file, String data) throws IOException {
+		Files.write(file.toPath(), data.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void executeIncremental(File webapp) throws Exception {
+		Mojo mm = newMojo(webapp);
+		mrule.setVariableValueToObject(mm, "incremental", true);
+		mm.execute();
+	}
+
+	private void executeIncrementalBundle(File webapp) throws Exception {
+		Mojo mm = newMojo(webapp);
+		mrule.setVariableValueToObject(mm, "incremental", true);
+		mrule.setVariableValueToObject(mm, "bundleAdjacent", true);
+		mm.execute();
+	}
+
 	private static void assertFiles(File expected, File actual) {
 		if (expected.isFile()) {
 			assertBinaryFilesEqual(expected, actual);
@@ -0,0 +1,99 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class HtmlMinifierTest {
+
+	private static final String[] FRAGMENTS = { "<p>", "</p>", "text", " ", "  ", "\t", "\n", "\r\n", "\u000B", "\f", "\u0001", "<input", "<inputs", " type=\"text\"", " name=\"a\">", "<br/>", ">", "<", "<div class=\"a b\">", "</div>", " " };
+
+	@Test
+	public void testSameAsRegex() {
+		Random random = new Random(1);
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder page = new StringBuilder();
+			int fragments = random.nextInt(60);
+			for (int j = 0; j < fragments; j++) {
+				if (random.nextInt(15) == 0) {
+					page.append(random.nextBoolean() ? "<pre>" : "<pre class=\"code\">");
+					int inner = random.nextInt(6);
+					for (int k = 0; k < inner; k++) {
+						page.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+					}
+					page.append("</pre>");
+				} else {
+					page.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+				}
+			}
+			String data = page.toString();
+			assertEquals(data, minifyWithRegex(data), HtmlMinifier.minify(data));
+		}
+	}
+
+	@Test
+	public void testPreserveRawText() {
+		assertEquals("<p>a</p><script>\n\tif (a > 1) {\n\t\tb();\n\t}\n</script><textarea>\n  text\n</textarea><style>\n.a { }\n</style><p>b</p>", HtmlMinifier.minify("<p>a</p>\n<script>\n\tif (a > 1) {\n\t\tb();\n\t}\n</script>\n<textarea>\n  text\n</textarea>\n<style>\n.a { }\n</style>\n<p>b</p>\n"));
+		// start tag is minified
+		assertEquals("<script type=\"text/javascript\" src='/js/script.js'></script><scripts></scripts>", HtmlMinifier.minify("<script \n\ttype=\"text/javascript\" \n\tsrc='/js/script.js'\n\t></script>\n<scripts>\n </scripts>"));
+	}
+
+	@Test
+	public void testManyPreBlocks() {
+		StringBuilder page = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 50000; i++) {
+			page.append("<p>\n\t").append(i).append("\n</p>\n<pre>\n  ").append(i).append("\n</pre>\n");
+			expected.append("<p>").append(i).append("</p><pre>\n  ").append(i).append("\n</pre>");
+		}
+		assertEquals(expected.toString(), HtmlMinifier.minify(page.toString()));
+	}
+
+	@Test
+	public void testDefaultInputType() {
+		assertEquals("<input name=\"a\"><input name=\"b\">", HtmlMinifier.minify("<input type=\"text\" name=\"a\"><input name=\"b\" type=\"text\">"));
+		// the first type="text" after <input on the same line
+		assertEquals("<input name=\"a\"><b></b><c type=\"text\"></c>", HtmlMinifier.minify("<input name=\"a\"><b type=\"text\"></b><c type=\"text\"></c>"));
+		assertEquals("<input name=\"a\"><span type=\"text\"></span>", HtmlMinifier.minify("<input name=\"a\">\n<span type=\"text\"></span>"));
+	}
+
+	// previous implementation
+	private static String minifyWithRegex(String page) {
+		Matcher m = Pattern.compile("(<input.*?) type=\"text\"").matcher(page);
+		StringBuffer sb = new StringBuffer();
+		while (m.find()) {
+			m.appendReplacement(sb, "$1");
+		}
+		m.appendTail(sb);
+		page = sb.toString();
+		StringBuilder result = new StringBuilder();
+		List<String> parts = new ArrayList<>();
+		int curStart = 0;
+		while (true) {
+			int start = page.indexOf("<pre", curStart);
+			if (start == -1) {
+				parts.add(page.substring(curStart));
+				break;
+			}
+			int end = page.indexOf("</pre>", start) + "</pre>".length();
+			parts.add(page.substring(curStart, start));
+			parts.add(page.substring(start, end));
+			curStart = end;
+		}
+		for (String cur : parts) {
+			if (cur.contains("<pre")) {
+				result.append(cur);
+			} else {
+				String fixed = Pattern.compile("[\n\t\r]").matcher(cur).replaceAll("");
+				result.append(Pattern.compile(">(\\s+)<").matcher(fixed).replaceAll("><").trim());
+			}
+		}
+		return result.toString();
+	}
+}
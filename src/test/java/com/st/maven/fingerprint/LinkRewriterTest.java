@@ -0,0 +1,112 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import com.st.maven.fingerprint.LinkRewriter.LinkHandler;
+
+public class LinkRewriterTest {
+
+	// rewritten links can't be resolved again
+	private static final LinkHandler HANDLER = (link, pattern) -> link.contains("~") ? link : "/~" + link;
+
+	@Test
+	public void testSameAsSequential() throws Exception {
+		StringBuilder data = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			data.append("<link rel='stylesheet' href=\"/css/custom").append(i).append(".css?v=1\">\n");
+			data.append("<link \nrel='stylesheet' \nhref='/js/not-a-script.js'\n>\n");
+			data.append("<script type=\"text/javascript\" src=\"/js/script").append(i).append(".js\"></script>\n");
+			data.append("<img class=\"someclass\" data-src=\"/js/lazy.js\" src='/img/img").append(i).append(".png' />\n");
+			data.append("<c:url value=\"/js/jstl.js\" var=\"url\"/>\n");
+			data.append("<c:url value=\"${pageContext.request.contextPath}/img/img.png\" var=\"url\"/>\n");
+			data.append("<style>.a { background: url( '/img/bg").append(i).append(".png' ) } .b { background: url(/js/odd.js) }</style>\n");
+			data.append("<pre>\n\tsome text with \"quotes\" and 'more.js' quotes\n</pre>\n");
+		}
+		assertEquals(rewriteSequentially(data.toString()), LinkRewriter.rewrite(data, HANDLER));
+	}
+
+	@Test
+	public void testStreaming() throws Exception {
+		StringBuilder data = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			data.append("<link rel='stylesheet' href=\"/css/custom").append(i).append(".css?v=1\">\n");
+			data.append("<img class=\"someclass\" data-src=\"/js/lazy.js\" src='/img/img").append(i).append(".png' />\n");
+			data.append("<style>.a { background: url( '/img/bg").append(i).append(".png' ) } .b { background: url(/js/odd.js) }</style>\n");
+			data.append("<pre>\n\tsome text with \"quotes\" and 'more.js' quotes\n</pre>\n");
+		}
+		// tag spans several blocks of the input
+		data.append("<img ");
+		for (int i = 0; i < LinkRewriter.MAX_MATCH_LENGTH / 2; i++) {
+			data.append(' ');
+		}
+		data.append("src='/img/last.png'>");
+		String expected = LinkRewriter.rewrite(data, HANDLER);
+		try (Reader r = LinkRewriter.rewrite(new ChunkedReader(data.toString()), HANDLER)) {
+			assertEquals(expected, IOUtils.toString(r));
+		}
+		List<String> expectedLinks = LinkRewriter.findLinks(data);
+		List<String> links = LinkRewriter.findLinks(new ChunkedReader(data.toString()));
+		Collections.sort(expectedLinks);
+		Collections.sort(links);
+		assertEquals(expectedLinks, links);
+	}
+
+	@Test(expected = LinkRewriter.OverlappingLinksException.class)
+	public void testStreamingOverlappingLinks() throws Exception {
+		try (Reader r = LinkRewriter.rewrite(new StringReader("<img src=\"x'y.js'\">"), HANDLER)) {
+			IOUtils.toString(r);
+		}
+	}
+
+	@Test
+	public void testNoLinks() throws Exception {
+		assertEquals("<html><body>test</body></html>", LinkRewriter.rewrite("<html><body>test</body></html>", HANDLER));
+	}
+
+	@Test
+	public void testOverlappingLinks() throws Exception {
+		assertNull(LinkRewriter.rewrite("<img src=\"x'y.js'\">", HANDLER));
+	}
+
+	private static String rewriteSequentially(String data) throws Exception {
+		String result = data;
+		for (Pattern cur : LinkRewriter.PATTERNS) {
+			StringBuffer output = new StringBuffer();
+			Matcher m = cur.matcher(result);
+			while (m.find()) {
+				m.appendReplacement(output, "$1" + Matcher.quoteReplacement(HANDLER.rewrite(m.group(2), cur)) + "$3");
+			}
+			m.appendTail(output);
+			result = output.toString();
+		}
+		return result;
+	}
+
+	// returns data in small pieces of different size
+	private static class ChunkedReader extends StringReader {
+
+		private final Random random = new Random(1);
+
+		ChunkedReader(String data) {
+			super(data);
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			return super.read(cbuf, off, Math.min(len, 1 + random.nextInt(1000)));
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MinificationCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Log log = new SystemStreamLog();
+
+	@Test
+	public void testHit() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		MinificationCache cache = new MinificationCache(folder.getRoot(), Long.MAX_VALUE);
+		assertEquals("A B", cache.minify("upper", "a b", log, (cur, curLog) -> {
+			calls.incrementAndGet();
+			return cur.toUpperCase();
+		}));
+		// shared between builds
+		cache = new MinificationCache(folder.getRoot(), Long.MAX_VALUE);
+		assertEquals("A B", cache.minify("upper", "a b", log, (cur, curLog) -> {
+			calls.incrementAndGet();
+			return cur.toUpperCase();
+		}));
+		assertEquals(1, calls.get());
+		assertEquals(1, cache.getHits());
+		assertEquals(0, cache.getMisses());
+		// options are part of the key
+		assertEquals("a b", cache.minify("lower", "a b", log, (cur, curLog) -> cur.toLowerCase()));
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsed() throws Exception {
+		// single entry: time, number of warnings and 10 bytes of data
+		MinificationCache cache = new MinificationCache(folder.getRoot(), 30);
+		cache.minify("test", "first", log, (cur, curLog) -> "0123456789");
+		cache.minify("test", "second", log, (cur, curLog) -> "0123456789");
+		List<File> entries = listEntries();
+		assertEquals(2, entries.size());
+		long old = System.currentTimeMillis() - 10000;
+		for (File cur : entries) {
+			assertTrue(cur.setLastModified(old));
+		}
+		// used recently
+		cache.minify("test", "second", log, (cur, curLog) -> "0123456789");
+		cache.evict();
+		assertEquals(1, listEntries().size());
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		cache.minify("test", "second", log, (cur, curLog) -> "0123456789");
+		assertEquals(2, cache.getHits());
+		cache.minify("test", "first", log, (cur, curLog) -> "0123456789");
+		assertEquals(3, cache.getMisses());
+	}
+
+	@Test
+	public void testWarningsReplayed() throws Exception {
+		MinificationCache cache = new MinificationCache(folder.getRoot(), Long.MAX_VALUE);
+		CollectingLog missLog = new CollectingLog();
+		cache.minify("test", "a", missLog, (cur, curLog) -> {
+			curLog.warn("unused variable");
+			curLog.error("syntax");
+			return cur;
+		});
+		CollectingLog hitLog = new CollectingLog();
+		assertEquals("a", cache.minify("test", "a", hitLog, (cur, curLog) -> cur));
+		assertEquals(1, cache.getHits());
+		assertEquals(messages(missLog), messages(hitLog));
+		assertEquals(Arrays.asList("W unused variable", "E syntax"), messages(hitLog));
+	}
+
+	@Test
+	public void testMinifierVersion() {
+		// cache key changes together with the dependency
+		assertTrue(Compressor.JAVASCRIPT_OPTIONS, Compressor.JAVASCRIPT_OPTIONS.startsWith("yuicompressor-2.4.8 "));
+		assertTrue(Compressor.CSS_OPTIONS.startsWith(Compressor.VERSION + " "));
+	}
+
+	private static List<String> messages(CollectingLog collected) {
+		List<String> result = new ArrayList<>();
+		collected.replay(new SystemStreamLog() {
+
+			@Override
+			public void warn(CharSequence content) {
+				result.add("W " + content);
+			}
+
+			@Override
+			public void error(CharSequence content) {
+				result.add("E " + content);
+			}
+		});
+		return result;
+	}
+
+	private List<File> listEntries() {
+		List<File> result = new ArrayList<>();
+		for (File cur : folder.getRoot().listFiles()) {
+			result.addAll(Arrays.asList(cur.listFiles()));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,187 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MinificationDaemonTest {
+
+	private static final String JAVASCRIPT = "function test(firstArgument, secondArgument) {\n\tvar result = firstArgument + secondArgument;\n\treturn result;\n}\n";
+	private static final String CSS = ".a {\n\tcolor: #ffffff;\n\tmargin: 0 auto;\n}\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Log log = new SystemStreamLog();
+	private MinificationDaemon daemon;
+	private Thread thread;
+	private File portFile;
+
+	@Before
+	public void start() throws Exception {
+		daemon = new MinificationDaemon(60000);
+		thread = new Thread(() -> {
+			try {
+				daemon.run();
+			} catch (Exception e) {
+				// closed
+			}
+		});
+		thread.start();
+		portFile = new File(folder.getRoot(), "daemon.port");
+		Files.write(portFile.toPath(), (daemon.getPort() + "\n" + daemon.getToken()).getBytes(StandardCharsets.US_ASCII));
+	}
+
+	@After
+	public void stop() throws Exception {
+		daemon.close();
+		thread.join();
+	}
+
+	@Test
+	public void testSameAsInProcess() throws Exception {
+		try (MinificationClient client = new MinificationClient(portFile, 60, false, log)) {
+			assertEquals(Compressor.compressJavaScript(new StringReader(JAVASCRIPT), log), client.compressJavaScript(JAVASCRIPT, log));
+			assertEquals(Compressor.compressCSS(new StringReader(CSS), log), client.compressCSS(CSS, log));
+		}
+	}
+
+	@Test
+	public void testConcurrentJobs() throws Exception {
+		String expected = Compressor.compressJavaScript(new StringReader(JAVASCRIPT), log);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (MinificationClient client = new MinificationClient(portFile, 60, false, log)) {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				results.add(executor.submit(() -> client.compressJavaScript(JAVASCRIPT, log)));
+			}
+			for (Future<String> cur : results) {
+				assertEquals(expected, cur.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		try (MinificationClient client = new MinificationClient(portFile, 60, false, log)) {
+			try {
+				client.compressJavaScript("function (", log);
+				fail("minification should fail");
+			} catch (RuntimeException e) {
+				assertTrue(e.getMessage(), e.getMessage().startsWith("unable to process"));
+			}
+			// connection is still usable
+			assertEquals(Compressor.compressCSS(new StringReader(CSS), log), client.compressCSS(CSS, log));
+		}
+	}
+
+	@Test
+	public void testFallback() throws Exception {
+		daemon.close();
+		try (MinificationClient client = new MinificationClient(portFile, 60, false, log)) {
+			assertEquals(Compressor.compressCSS(new StringReader(CSS), log), client.compressCSS(CSS, log));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testHungDaemon() throws Exception {
+		// accepts connections, but never responds
+		try (ServerSocket hung = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			File hungPortFile = new File(folder.getRoot(), "hung.port");
+			Files.write(hungPortFile.toPath(), (hung.getLocalPort() + "\ntoken").getBytes(StandardCharsets.US_ASCII));
+			try (MinificationClient client = new MinificationClient(hungPortFile, 60, false, 200, log)) {
+				assertEquals(Compressor.compressCSS(new StringReader(CSS), log), client.compressCSS(CSS, log));
+			}
+		}
+	}
+
+	@Test
+	public void testWrongToken() throws Exception {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeUTF("wrong");
+			out.writeByte(MinificationDaemon.CSS);
+			MinificationDaemon.writeString(out, CSS);
+			out.flush();
+			// connection is closed without response
+			assertEquals(-1, socket.getInputStream().read());
+		} catch (SocketException e) {
+			// reset because the request wasn't read
+		}
+	}
+
+	@Test
+	public void testPrivateDirectory() throws Exception {
+		Assume.assumeTrue(folder.getRoot().toPath().getFileSystem().supportedFileAttributeViews().contains("posix"));
+		File directory = new File(folder.getRoot(), "daemon");
+		MinificationClient.createPrivateDirectory(directory);
+		assertEquals(MinificationClient.OWNER_ONLY, Files.getPosixFilePermissions(directory.toPath()));
+		// opened by mistake
+		Files.setPosixFilePermissions(directory.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+		MinificationClient.createPrivateDirectory(directory);
+		assertEquals(MinificationClient.OWNER_ONLY, Files.getPosixFilePermissions(directory.toPath()));
+		// link to the directory of another user
+		File link = new File(folder.getRoot(), "link");
+		Files.createSymbolicLink(link.toPath(), directory.toPath());
+		try {
+			MinificationClient.createPrivateDirectory(link);
+			fail("symbolic link should be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testIdleTimeout() throws Exception {
+		try (MinificationDaemon idle = new MinificationDaemon(100)) {
+			idle.run();
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testStartDaemon() throws Exception {
+		File directory = new File(folder.getRoot(), "daemon");
+		try (MinificationClient client = new MinificationClient(directory, 1, log)) {
+			assertEquals(Compressor.compressCSS(new StringReader(CSS), log), client.compressCSS(CSS, log));
+		}
+		String[] files = directory.list((dir, name) -> name.endsWith(".port"));
+		assertEquals(1, files.length);
+		File started = new File(directory, files[0]);
+		if (started.toPath().getFileSystem().supportedFileAttributeViews().contains("posix")) {
+			assertEquals(MinificationClient.OWNER_ONLY, Files.getPosixFilePermissions(directory.toPath()));
+			assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(started.toPath()));
+		}
+		// daemon exits after idle timeout
+		while (started.exists()) {
+			Thread.sleep(100);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PreloadHintsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testInject() {
+		String page = "<html><HEAD lang=\"en\"><title>a</title></HEAD></html>";
+		String result = PreloadHints.inject(page, Arrays.asList(new PreloadHints.Hint("/a.css", PreloadType.STYLE, false), new PreloadHints.Hint("/a.js", PreloadType.SCRIPT, true), new PreloadHints.Hint("/a.woff2", PreloadType.FONT, false)));
+		assertEquals("<html><HEAD lang=\"en\"><link rel=\"preload\" href=\"/a.css\" as=\"style\"><link rel=\"modulepreload\" href=\"/a.js\"><link rel=\"preload\" href=\"/a.woff2\" as=\"font\" crossorigin><title>a</title></HEAD></html>", result);
+		assertEquals("</a.css>; rel=preload; as=style, </a.js>; rel=modulepreload, </a.woff2>; rel=preload; as=font; crossorigin", PreloadHints.getHeader(result, "${pageContext.request.contextPath}"));
+		// fragments and <header> are not pages
+		String fragment = "<header><a href=\"/\">a</a></header>";
+		assertEquals(fragment, PreloadHints.inject(fragment, Collections.singletonList(new PreloadHints.Hint("/a.css", PreloadType.STYLE, false))));
+		assertNull(PreloadHints.getHeader(fragment, ""));
+	}
+
+	@Test
+	public void testFind() {
+		String page = "<script type='module' src='/a.js'></script><script src='/b.js'></script><link rel=preload href='/c.png' as=image>";
+		assertEquals(Collections.singleton("/a.js"), PreloadHints.findModules(page));
+		assertEquals(Collections.singleton("/c.png"), PreloadHints.findPreloaded(page));
+	}
+
+	@Test
+	public void testFindFonts() {
+		String css = "@font-face{src:url('fonts/a.woff2?v=1#x') format('woff2'),url(/fonts/a.woff2?v=1)}.a{background:url(/img/a.png)}.b{src:url(data:font/woff2;base64,AAAA)}";
+		assertEquals(Arrays.asList("/css/fonts/a.woff2?v=1", "/fonts/a.woff2?v=1"), PreloadHints.findFonts("/css/a.css", css));
+	}
+
+	@Test
+	public void testSaveNginxMap() throws Exception {
+		File file = new File(folder.getRoot(), "conf/preload.conf");
+		Map<String, String> headers = new TreeMap<>();
+		headers.put("/index.html", "</a.css>; rel=preload; as=style");
+		headers.put("/WEB-INF/a.jsp", "<${cdn}/a.css>; rel=preload; as=style");
+		PreloadHints.saveNginxMap(file, headers);
+		assertEquals("map $uri $fingerprint_preload {\n\tdefault \"\";\n\t\"/index.html\" \"</a.css>; rel=preload; as=style\";\n}\n", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+	}
+}
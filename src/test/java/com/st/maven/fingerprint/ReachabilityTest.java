@@ -0,0 +1,26 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ReachabilityTest {
+
+	@Test
+	public void testFindReachable() {
+		Map<String, Set<String>> references = new HashMap<>();
+		references.put("/index.html", new HashSet<>(Arrays.asList("/a.css", "/missing.png")));
+		references.put("/a.css", new HashSet<>(Arrays.asList("/copy.png", "/index.html")));
+		references.put("/unused.css", Collections.singleton("/b.png"));
+		Map<String, String> duplicates = Collections.singletonMap("/copy.png", "/original.png");
+		Set<String> expected = new HashSet<>(Arrays.asList("/index.html", "/a.css", "/missing.png", "/copy.png", "/original.png"));
+		assertEquals(expected, Reachability.findReachable(Collections.singletonList("/index.html"), references, duplicates));
+	}
+}
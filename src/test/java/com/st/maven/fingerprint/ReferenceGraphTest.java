@@ -0,0 +1,79 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.st.maven.fingerprint.ReferenceGraph.Component;
+
+public class ReferenceGraphTest {
+
+	private static final File HTML = new File("/webapp/index.html");
+	private static final File CSS = new File("/webapp/css/custom.css");
+	private static final File IMPORTED_CSS = new File("/webapp/css/imported.css");
+	private static final File JS = new File("/webapp/js/script.js");
+
+	@Test
+	public void testDependenciesFirst() {
+		ReferenceGraph graph = createGraph();
+		graph.addReference(HTML, Util.normalize(CSS));
+		graph.addReference(HTML, Util.normalize(JS));
+		graph.addReference(CSS, Util.normalize(IMPORTED_CSS));
+		List<Component> components = graph.getComponents();
+		assertEquals(4, components.size());
+		assertBefore(components, IMPORTED_CSS, CSS);
+		assertBefore(components, CSS, HTML);
+		assertBefore(components, JS, HTML);
+		Component html = find(components, HTML);
+		assertEquals(2, html.dependencies.size());
+	}
+
+	@Test
+	public void testCycle() {
+		ReferenceGraph graph = createGraph();
+		graph.addReference(HTML, Util.normalize(CSS));
+		graph.addReference(CSS, Util.normalize(IMPORTED_CSS));
+		graph.addReference(IMPORTED_CSS, Util.normalize(CSS));
+		List<Component> components = graph.getComponents();
+		assertEquals(3, components.size());
+		Component cycle = find(components, CSS);
+		// processed in the graph order
+		assertEquals(Arrays.asList(CSS, IMPORTED_CSS), cycle.files);
+		assertTrue(cycle.dependencies.isEmpty());
+		assertBefore(components, CSS, HTML);
+	}
+
+	@Test
+	public void testIgnoreUnknownAndSelfReferences() {
+		ReferenceGraph graph = createGraph();
+		graph.addReference(CSS, Util.normalize(CSS));
+		graph.addReference(CSS, Util.normalize(new File("/webapp/img/img.png")));
+		for (Component cur : graph.getComponents()) {
+			assertTrue(cur.dependencies.isEmpty());
+			assertEquals(1, cur.files.size());
+		}
+	}
+
+	private static ReferenceGraph createGraph() {
+		return new ReferenceGraph(Arrays.asList(HTML, CSS, IMPORTED_CSS, JS), new FileComparator(Collections.singleton("html")));
+	}
+
+	private static void assertBefore(List<Component> components, File first, File second) {
+		assertTrue(components.indexOf(find(components, first)) < components.indexOf(find(components, second)));
+	}
+
+	private static Component find(List<Component> components, File file) {
+		for (Component cur : components) {
+			if (cur.files.contains(file)) {
+				return cur;
+			}
+		}
+		throw new IllegalArgumentException("not found: " + file);
+	}
+}
@@ -0,0 +1,81 @@
+package com.st.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ResourceMatcherTest {
+
+	@Test
+	public void testSubstrings() {
+		ResourceMatcher matcher = new ResourceMatcher(Arrays.asList("//", "data:", "search.xml", "he", "she", "hers"), null);
+		assertTrue(matcher.isExcluded("http://example.com/a.png"));
+		assertTrue(matcher.isExcluded("data:image/png;base64,AAAA"));
+		assertTrue(matcher.isExcluded("/WEB-INF/search.xml"));
+		assertFalse(matcher.isExcluded("/img/img.png"));
+		assertFalse(matcher.isExcluded("/search.xm"));
+		// overlapping keywords are all found
+		assertTrue(matcher.isExcluded("/ushers"));
+		// the same link is counted once
+		assertTrue(matcher.isExcluded("http://example.com/a.png"));
+		assertTrue(matcher.isExcluded("/ushers"));
+		List<ResourceRules.Rule> rules = matcher.getExcludes();
+		assertEquals(1, rules.get(0).getHits());
+		assertEquals(1, rules.get(3).getHits());
+		assertEquals(1, rules.get(4).getHits());
+		assertEquals(1, rules.get(5).getHits());
+	}
+
+	@Test
+	public void testPatterns() {
+		ResourceMatcher matcher = new ResourceMatcher(Arrays.asList("glob:/generated/*.js", "glob:/vendor/**", "regex:^/api/v\\d+/"), Collections.singletonList("glob:/generated/app.js"));
+		assertTrue(matcher.isExcluded("/generated/a.js"));
+		assertFalse(matcher.isExcluded("/generated/sub/a.js"));
+		assertFalse(matcher.isExcluded("/generated/app.js"));
+		assertTrue(matcher.isExcluded("/vendor/jquery/jquery.js"));
+		assertTrue(matcher.isExcluded("/api/v2/users"));
+		assertFalse(matcher.isExcluded("/api/current"));
+		List<ResourceRules.Rule> rules = matcher.getExcludes();
+		assertEquals(2, rules.get(0).getHits());
+		assertEquals(1, rules.get(1).getHits());
+		assertEquals(1, rules.get(2).getHits());
+		assertEquals(1, matcher.getIncludes().get(0).getHits());
+	}
+
+	@Test
+	public void testGlob() {
+		assertTrue(ResourceRules.compileGlob("/img/?.png").matcher("/img/a.png").matches());
+		assertFalse(ResourceRules.compileGlob("/img/?.png").matcher("/img/ab.png").matches());
+		// regex characters are literal
+		assertFalse(ResourceRules.compileGlob("/img/a.png").matcher("/img/axpng").matches());
+	}
+
+	@Test
+	public void testEmpty() {
+		assertFalse(new ResourceMatcher(null, null).isExcluded("//example.com"));
+		assertTrue(new ResourceMatcher(Collections.singletonList(""), null).isExcluded("/a.png"));
+	}
+
+	@Test
+	public void testRules() {
+		ResourceRules rules = new ResourceRules(Arrays.asList("/js/app.js", "glob:/*.html"));
+		assertTrue(rules.matches("/index.html"));
+		assertTrue(rules.matches("/js/app.js"));
+		assertFalse(rules.matches("/js/other.js"));
+		// hits are counted only on request
+		assertEquals(0, rules.getRules().get(0).getHits());
+		assertTrue(rules.matches("/js/app.js", true));
+		assertEquals(1, rules.getRules().get(0).getHits());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRegex() {
+		new ResourceMatcher(Collections.singletonList("regex:("), null);
+	}
+}
@@ -8,6 +8,8 @@ import org.junit.Test;
 
 public class UtilTest {
 
+	private static final String HASH = "331afe01c54815562adc514c6b5eb561";
+
 	@Test
 	public void testGetExtension() {
 		assertEquals("css", Util.getExtension("file.css"));
@@ -24,32 +26,42 @@ public class UtilTest {
 	@Test
 	public void testGenerateFilenameWithDefaultPattern() throws Exception {
 		String defaultPattern = "[hash][name].[ext]";
-		File file = new File("src/test/resources/dummy-file-for-testing.txt");
-		String resultFilename = Util.generateTargetResourceFilename(file, "dummy-file-for-testing.txt", defaultPattern);
+		String resultFilename = Util.generateTargetResourceFilename(HASH, "dummy-file-for-testing.txt", defaultPattern);
 		assertEquals("331afe01c54815562adc514c6b5eb561dummy-file-for-testing.txt", resultFilename);
 	}
 
 	@Test
 	public void testGenerateFilenameWithCustomPattern() throws Exception {
 		String namePattern = "[hash].[name].[ext]";
-		File file = new File("src/test/resources/dummy-file-for-testing.txt");
-		String resultFilename = Util.generateTargetResourceFilename(file, "dummy-file-for-testing.txt", namePattern);
+		String resultFilename = Util.generateTargetResourceFilename(HASH, "dummy-file-for-testing.txt", namePattern);
 		assertEquals("331afe01c54815562adc514c6b5eb561.dummy-file-for-testing.txt", resultFilename);
 	}
 
 	@Test
 	public void testGenerateFilenameWithAnotherCustomPattern() throws Exception {
 		String namePattern = "[name].[ext]?hash=[hash]";
-		File file = new File("src/test/resources/dummy-file-for-testing.txt");
-		String resultFilename = Util.generateTargetResourceFilename(file, "dummy-file-for-testing.txt", namePattern);
+		String resultFilename = Util.generateTargetResourceFilename(HASH, "dummy-file-for-testing.txt", namePattern);
 		assertEquals("dummy-file-for-testing.txt?hash=331afe01c54815562adc514c6b5eb561", resultFilename);
 	}
 
 	@Test
 	public void testGenerateFilenameWithUnsupportedParameterInCustomPattern() throws Exception {
 		String namePattern = "[name].[hash].[ext][sv]";
-		File file = new File("src/test/resources/dummy-file-for-testing.txt");
-		String resultFilename = Util.generateTargetResourceFilename(file, "dummy-file-for-testing.txt", namePattern);
+		String resultFilename = Util.generateTargetResourceFilename(HASH, "dummy-file-for-testing.txt", namePattern);
 		assertEquals("dummy-file-for-testing.331afe01c54815562adc514c6b5eb561.txt[sv]", resultFilename);
 	}
+
+	@Test
+	public void testGenerateFilenameWithTruncatedHash() throws Exception {
+		String namePattern = "[name].[hash:8].[ext]";
+		String resultFilename = Util.generateTargetResourceFilename(HASH, "/dir/dummy-file-for-testing.txt", namePattern);
+		assertEquals("/dir/dummy-file-for-testing.331afe01.txt", resultFilename);
+	}
+
+	@Test
+	public void testGenerateFilenameWithInvalidTruncation() throws Exception {
+		String namePattern = "[name].[hash:x].[ext]";
+		String resultFilename = Util.generateTargetResourceFilename(HASH, "dummy-file-for-testing.txt", namePattern);
+		assertEquals("dummy-file-for-testing.[hash:x].txt", resultFilename);
+	}
 }